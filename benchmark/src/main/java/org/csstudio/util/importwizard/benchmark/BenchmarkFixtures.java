@@ -0,0 +1,180 @@
+package org.csstudio.util.importwizard.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * <code>BenchmarkFixtures</code>
+ * writes the project descriptors and trees the benchmarks read.
+ *
+ */
+public final class BenchmarkFixtures {
+	private static final int MANIFEST_LINE_LENGTH = 72;
+
+	private BenchmarkFixtures() {
+	}
+
+	/**
+	 * Write a tree of plug-in and feature projects. Every project depends on up to 8 projects written before it,
+	 * every tenth project is a feature, and every plug-in has a small source folder next to its descriptors.
+	 * @param root Directory to write the tree into.
+	 * @param projectCount Number of projects.
+	 * @param seed Seed of the random dependencies.
+	 * @return Ids of the written projects.
+	 * @throws IOException Error while writing the files.
+	 */
+	public static List<String> writeProjectTree(Path root, int projectCount, long seed) throws IOException {
+		Random random = new Random(seed);
+		List<String> projectIds = new ArrayList<String>(projectCount);
+		for(int i=0;i<projectCount;i++){
+			boolean feature = i % 10 == 9;
+			String projectId = "org.csstudio.benchmark.p" + i + (feature ? ".feature" : "");
+			List<String> dependencies = new ArrayList<String>();
+			for(int j=random.nextInt(9);j>0 && i>0;j--){
+				dependencies.add(projectIds.get(random.nextInt(i)));
+			}
+
+			Path projectDirectory = root.resolve(feature ? "features" : "plugins").resolve(projectId);
+			writeProjectFile(projectDirectory, projectId);
+			if(feature){
+				write(projectDirectory.resolve("feature.xml"), featureXml(projectId, dependencies.subList(0, dependencies.size() / 2),
+						dependencies.subList(dependencies.size() / 2, dependencies.size()), new ArrayList<String>()));
+			}else{
+				write(projectDirectory.resolve("META-INF/MANIFEST.MF"), manifest(projectId, dependencies));
+				write(projectDirectory.resolve("src/org/csstudio/benchmark/Activator.java"), "package org.csstudio.benchmark;\n");
+				write(projectDirectory.resolve("build.properties"), "source.. = src/\n");
+			}
+			projectIds.add(projectId);
+		}
+		return projectIds;
+	}
+
+	/**
+	 * Write the <code>.project</code> file of a project.
+	 * @param projectDirectory Directory of the project.
+	 * @param projectId Name of the project.
+	 * @throws IOException Error while writing the file.
+	 */
+	public static void writeProjectFile(Path projectDirectory, String projectId) throws IOException {
+		write(projectDirectory.resolve(".project"), "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<projectDescription>\n\t<name>"
+				+ projectId + "</name>\n\t<comment></comment>\n\t<projects>\n\t</projects>\n\t<buildSpec>\n\t</buildSpec>\n"
+				+ "\t<natures>\n\t\t<nature>org.eclipse.pde.PluginNature</nature>\n\t</natures>\n</projectDescription>\n");
+	}
+
+	/**
+	 * Create the text of a bundle manifest. Every required bundle gets a version attribute, every third one is optional
+	 * and the header is wrapped into continuation lines like in the real manifests.
+	 * @param bundleId Symbolic name of the bundle.
+	 * @param requiredBundles Required bundles.
+	 * @return Manifest text.
+	 */
+	public static String manifest(String bundleId, List<String> requiredBundles) {
+		StringBuilder manifest = new StringBuilder();
+		appendHeader(manifest, "Manifest-Version: 1.0");
+		appendHeader(manifest, "Bundle-ManifestVersion: 2");
+		appendHeader(manifest, "Bundle-SymbolicName: " + bundleId + ";singleton:=true");
+		appendHeader(manifest, "Bundle-Version: 1.0.0.qualifier");
+		if(!requiredBundles.isEmpty()){
+			StringBuilder header = new StringBuilder("Require-Bundle: ");
+			for(int i=0;i<requiredBundles.size();i++){
+				if(i > 0){
+					header.append(",\n ");
+				}
+				header.append(requiredBundles.get(i)).append(";bundle-version=\"1.0.0\"");
+				if(i % 3 == 2){
+					header.append(";resolution:=optional");
+				}
+			}
+			appendHeader(manifest, header.toString());
+		}
+		appendHeader(manifest, "Bundle-RequiredExecutionEnvironment: JavaSE-1.7");
+		return manifest.append("\n").toString();
+	}
+
+	/**
+	 * Append a header, wrapping its lines at the manifest line length.
+	 * @param manifest Manifest text.
+	 * @param header Header, can contain line breaks followed by a space.
+	 */
+	static void appendHeader(StringBuilder manifest, String header) {
+		for(String line:header.split("\n")){
+			while(line.length() > MANIFEST_LINE_LENGTH){
+				manifest.append(line, 0, MANIFEST_LINE_LENGTH).append("\n");
+				line = " " + line.substring(MANIFEST_LINE_LENGTH);
+			}
+			manifest.append(line).append("\n");
+		}
+	}
+
+	/**
+	 * Create the text of a feature descriptor.
+	 * @param featureId Id of the feature.
+	 * @param imports Imported plug-ins.
+	 * @param plugins Plug-ins of the feature.
+	 * @param includes Included features.
+	 * @return Feature XML.
+	 */
+	public static String featureXml(String featureId, List<String> imports, List<String> plugins, List<String> includes) {
+		StringBuilder feature = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<feature id=\"")
+				.append(featureId).append("\" label=\"Benchmark\" version=\"1.0.0.qualifier\">\n")
+				.append("   <description url=\"http://www.example.com/description\">\n      Benchmark feature.\n   </description>\n")
+				.append("   <license url=\"http://www.example.com/license\">\n      Benchmark license text.\n   </license>\n");
+		for(String include:includes){
+			feature.append("   <includes id=\"").append(include).append("\" version=\"0.0.0\"/>\n");
+		}
+		feature.append("   <requires>\n");
+		for(String importName:imports){
+			feature.append("      <import plugin=\"").append(importName).append("\" version=\"1.0.0\" match=\"greaterOrEqual\"/>\n");
+		}
+		feature.append("   </requires>\n");
+		for(String plugin:plugins){
+			feature.append("   <plugin id=\"").append(plugin)
+					.append("\" download-size=\"0\" install-size=\"0\" version=\"0.0.0\" unpack=\"false\"/>\n");
+		}
+		return feature.append("</feature>\n").toString();
+	}
+
+	/**
+	 * Write a file, creating its directory.
+	 * @param file File to write.
+	 * @param content Text of the file.
+	 * @throws IOException Error while writing the file.
+	 */
+	public static void write(Path file, String content) throws IOException {
+		Files.createDirectories(file.getParent());
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Delete a directory with all its content.
+	 * @param root Directory to delete.
+	 * @throws IOException Error while deleting the files.
+	 */
+	public static void deleteTree(Path root) throws IOException {
+		if(root == null || !Files.exists(root)){
+			return;
+		}
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
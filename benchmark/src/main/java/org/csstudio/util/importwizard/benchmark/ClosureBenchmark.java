@@ -0,0 +1,150 @@
+package org.csstudio.util.importwizard.benchmark;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.csstudio.util.importwizard.project.DependencyGraph;
+import org.csstudio.util.importwizard.project.ProjectDefinition;
+import org.csstudio.util.importwizard.project.importer.ClosureEngine;
+import org.csstudio.util.importwizard.project.importer.ImportPlan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * <code>ClosureBenchmark</code>
+ * measures the dependency graph construction and the closure computation over graphs of different size and shape.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClosureBenchmark {
+	private static final int SELECTED_PROJECT_COUNT = 16;
+
+	/**
+	 * Shapes of the generated graphs.
+	 */
+	public enum GraphShape {
+		/** Every project depends on the previous one. */
+		CHAIN,
+		/** Every project depends on its four children, the first project depends on all. */
+		TREE,
+		/** Every project depends on up to 8 random projects before it. */
+		RANDOM_DAG,
+		/** The random graph where every 50th project also depends on a project after it. */
+		CYCLIC
+	}
+
+	@Param({"1000", "10000"})
+	private int size;
+
+	@Param({"CHAIN", "TREE", "RANDOM_DAG", "CYCLIC"})
+	private GraphShape shape;
+
+	private List<ProjectDefinition> projects;
+	private DependencyGraph dependencyGraph;
+	private List<ProjectDefinition> selectedProjects;
+
+	/**
+	 * Generate the graph and the selection.
+	 */
+	@Setup
+	public void setUp() {
+		projects = createProjects(size, shape, new Random(42));
+		dependencyGraph = new DependencyGraph(projects);
+		Random random = new Random(7);
+		selectedProjects = new ArrayList<ProjectDefinition>();
+		for(int i=0;i<SELECTED_PROJECT_COUNT;i++){
+			selectedProjects.add(projects.get(random.nextInt(size)));
+		}
+	}
+
+	/**
+	 * Generate the projects of a graph.
+	 * @param size Number of projects.
+	 * @param shape Shape of the graph.
+	 * @param random Random generator.
+	 * @return Projects with their dependencies.
+	 */
+	static List<ProjectDefinition> createProjects(int size, GraphShape shape, Random random) {
+		List<ProjectDefinition> projects = new ArrayList<ProjectDefinition>(size);
+		for(int i=0;i<size;i++){
+			List<String> dependencies = new ArrayList<String>();
+			switch(shape){
+			case CHAIN:
+				if(i > 0){
+					dependencies.add(projectId(i - 1));
+				}
+				break;
+			case TREE:
+				for(int child=4*i+1;child<=4*i+4 && child<size;child++){
+					dependencies.add(projectId(child));
+				}
+				break;
+			case RANDOM_DAG:
+			case CYCLIC:
+				for(int j=random.nextInt(9);j>0 && i>0;j--){
+					dependencies.add(projectId(random.nextInt(i)));
+				}
+				if(shape == GraphShape.CYCLIC && i % 50 == 0 && i + 1 < size){
+					dependencies.add(projectId(i + 1 + random.nextInt(size - i - 1)));
+				}
+				break;
+			}
+			projects.add(new ProjectDefinition(projectId(i), "/benchmark/" + projectId(i), dependencies));
+		}
+		return projects;
+	}
+
+	/**
+	 * Return the id of a generated project.
+	 * @param index Index of the project.
+	 * @return Project id.
+	 */
+	private static String projectId(int index) {
+		return "org.csstudio.benchmark.p" + index;
+	}
+
+	/**
+	 * Build the compact graph of the projects.
+	 * @return Dependency graph.
+	 */
+	@Benchmark
+	public DependencyGraph buildGraph() {
+		return new DependencyGraph(projects);
+	}
+
+	/**
+	 * Compute the closure of the selection with a new engine, as the wizard does after a load.
+	 * @return Closure of the selection.
+	 */
+	@Benchmark
+	public BitSet computeClosure() {
+		return new ClosureEngine(dependencyGraph, false).computeClosure(selectedProjects);
+	}
+
+	/**
+	 * Compute the closure of the selection and order it for the import.
+	 * @return Import plan.
+	 */
+	@Benchmark
+	public ImportPlan createImportPlan() {
+		return new ClosureEngine(dependencyGraph, false).createImportPlan(selectedProjects);
+	}
+}
@@ -0,0 +1,89 @@
+package org.csstudio.util.importwizard.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.csstudio.util.importwizard.project.ProjectDefinition;
+import org.csstudio.util.importwizard.wizard.ProjectFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * <code>ProjectFilterBenchmark</code>
+ * measures the query latency of the {@link org.csstudio.util.importwizard.wizard.ProjectFilter ProjectFilter}
+ * over generated project ids, next to the linear <code>String.contains</code> scan it replaced.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectFilterBenchmark {
+	private static final String[] AREAS = {"display", "alarm", "archive", "opibuilder", "trends", "logbook",
+			"scan", "utility", "diag", "channel", "security", "apputil", "email", "sns", "iter", "desy"};
+	private static final String[] MODULES = {"ui", "core", "model", "server", "client", "widgets",
+			"editor", "rdb", "preferences", "help", "runtime", "feature", "test"};
+
+	@Param({"10000"})
+	private int projectCount;
+
+	@Param({"ui", "display", "org.csstudio.alarm", "o.c.d.ui", "csAlaSer", "nomatchatall"})
+	private String query;
+
+	private List<ProjectDefinition> projects;
+	private ProjectFilter projectFilter;
+
+	/**
+	 * Generate the projects and index them.
+	 */
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		projects = new ArrayList<ProjectDefinition>(projectCount);
+		for(int i=0;i<projectCount;i++){
+			String projectId = "org.csstudio." + AREAS[random.nextInt(AREAS.length)] + ".p" + i + "."
+					+ MODULES[random.nextInt(MODULES.length)];
+			projects.add(new ProjectDefinition(projectId, "/work/" + projectId, Collections.<String>emptyList()));
+		}
+		projectFilter = new ProjectFilter(projects);
+	}
+
+	/**
+	 * Query the index.
+	 * @return Matching projects.
+	 */
+	@Benchmark
+	public List<ProjectDefinition> indexed() {
+		return projectFilter.filter(query);
+	}
+
+	/**
+	 * The linear filter the index replaced.
+	 * @return Projects containing the query.
+	 */
+	@Benchmark
+	public List<ProjectDefinition> linear() {
+		List<ProjectDefinition> filteredList = new ArrayList<ProjectDefinition>(projects.size());
+		for(ProjectDefinition projectDefinition:projects){
+			if(projectDefinition.getProjectId().contains(query)){
+				filteredList.add(projectDefinition);
+			}
+		}
+		return filteredList;
+	}
+}
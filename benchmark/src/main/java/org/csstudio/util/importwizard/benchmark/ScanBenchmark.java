@@ -0,0 +1,93 @@
+package org.csstudio.util.importwizard.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.csstudio.util.importwizard.project.ProjectDefinition;
+import org.csstudio.util.importwizard.project.provider.FSProjectDefinitionProvider;
+import org.csstudio.util.importwizard.project.provider.ScanIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * <code>ScanBenchmark</code>
+ * measures a full scan of a generated project tree, with and without a warm scan index.
+ * The tree stays in the page cache, so the numbers are for a warm file system.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScanBenchmark {
+	@Param({"1000", "5000"})
+	private int projectCount;
+
+	@Param({"1", "4"})
+	private int parallelism;
+
+	private Path directory;
+	private Path root;
+	private Path indexFile;
+
+	/**
+	 * Write the tree and a warm index of it.
+	 * @throws IOException Error while writing the files.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("scan-benchmark");
+		root = directory.resolve("tree");
+		BenchmarkFixtures.writeProjectTree(root, projectCount, 42);
+		indexFile = directory.resolve("scan.index");
+		ScanIndex scanIndex = new ScanIndex(indexFile, root.toString());
+		new FSProjectDefinitionProvider(root.toString(), parallelism, scanIndex);
+		scanIndex.save();
+	}
+
+	/**
+	 * Delete the tree.
+	 * @throws IOException Error while deleting the files.
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		BenchmarkFixtures.deleteTree(directory);
+	}
+
+	/**
+	 * Scan and parse every project.
+	 * @return Found projects.
+	 * @throws IOException Error while reading the files.
+	 */
+	@Benchmark
+	public Map<String, ProjectDefinition> scan() throws IOException {
+		return new FSProjectDefinitionProvider(root.toString(), parallelism).getProjectDefinitions();
+	}
+
+	/**
+	 * Scan with an index where no project changed, so nothing is parsed.
+	 * @return Found projects.
+	 * @throws IOException Error while reading the files.
+	 */
+	@Benchmark
+	public Map<String, ProjectDefinition> scanWithIndex() throws IOException {
+		ScanIndex scanIndex = new ScanIndex(indexFile, root.toString());
+		return new FSProjectDefinitionProvider(root.toString(), parallelism, scanIndex).getProjectDefinitions();
+	}
+}
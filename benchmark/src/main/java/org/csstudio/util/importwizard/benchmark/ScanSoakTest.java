@@ -0,0 +1,373 @@
+package org.csstudio.util.importwizard.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.csstudio.util.importwizard.project.DependencyGraph;
+import org.csstudio.util.importwizard.project.ProjectDefinition;
+import org.csstudio.util.importwizard.project.importer.ClosureEngine;
+import org.csstudio.util.importwizard.project.importer.ImportPlan;
+import org.csstudio.util.importwizard.project.importer.OptionalDependencyMode;
+import org.csstudio.util.importwizard.project.metrics.IMetricsListener.Counter;
+import org.csstudio.util.importwizard.project.metrics.ImportMetrics;
+import org.csstudio.util.importwizard.project.provider.FSProjectDefinitionProvider;
+import org.csstudio.util.importwizard.project.provider.ProjectDefinitionCollector;
+import org.csstudio.util.importwizard.project.provider.ScanPruningRules;
+
+
+/**
+ * <code>ScanSoakTest</code>
+ * runs the scan and the closure computation end to end over a {@link SyntheticTreeGenerator synthetic tree} and checks them
+ * against wall-clock and heap budgets.</br>
+ * It writes the tree, scans it with {@link FSProjectDefinitionProvider}, builds the dependency graph, creates the import plan
+ * of all the features and computes the closure of single plug-ins the way the wizard does while the user checks them.
+ * The scan and the closures are repeated for the given number of rounds, so slow leaks show up in the heap.
+ * It prints one line with <code>key=value</code> pairs and exits with a non-zero status if a check or a budget fails.
+ * Run it with a bounded heap, e.g.
+ * <code>java -Xmx512m -cp benchmark/target/benchmarks.jar org.csstudio.util.importwizard.benchmark.ScanSoakTest -projects 50000</code>.
+ *
+ */
+public class ScanSoakTest {
+	private static final String USAGE = "Arguments: [-projects <n>] [-seed <n>] [-parallelism <n>] [-rounds <n>] "
+			+ "[-maxMillis <n>] [-maxHeapMb <n>] [-maxRetainedMb <n>] [-directory <path>] [-keep]";
+	private static final int SELECTION_COUNT = 200;
+
+	private int projectCount = 10000;
+	private long seed = 42;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private int rounds = 3;
+	private long maxMillis = -1;
+	private long maxHeapMb = -1;
+	private long maxRetainedMb = -1;
+	private Path directory;
+	private boolean keep = false;
+
+	private final Map<String, Object> summary = new LinkedHashMap<String, Object>();
+	private final List<String> failures = new ArrayList<String>();
+
+	/**
+	 * Run the soak test.
+	 * @param args Arguments listed in {@link #USAGE}.
+	 * @throws IOException Error while writing or scanning the tree.
+	 */
+	public static void main(String[] args) throws IOException {
+		ScanSoakTest soakTest = new ScanSoakTest();
+		try {
+			soakTest.parseArguments(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+		System.exit(soakTest.run() ? 0 : 1);
+	}
+
+	/**
+	 * Parse the arguments. Budgets that are not given scale with the project count.
+	 * @param args Command line arguments.
+	 * @throws IllegalArgumentException If an argument is unknown or has no value.
+	 */
+	private void parseArguments(String[] args) {
+		for(int i=0;i<args.length;i++){
+			String arg = args[i];
+			if("-keep".equals(arg)){
+				keep = true;
+				continue;
+			}
+			if(i + 1 >= args.length){
+				throw new IllegalArgumentException("Missing value of " + arg);
+			}
+			String value = args[++i];
+			try {
+				if("-projects".equals(arg)){
+					projectCount = Integer.parseInt(value);
+				}else if("-seed".equals(arg)){
+					seed = Long.parseLong(value);
+				}else if("-parallelism".equals(arg)){
+					parallelism = Integer.parseInt(value);
+				}else if("-rounds".equals(arg)){
+					rounds = Integer.parseInt(value);
+				}else if("-maxMillis".equals(arg)){
+					maxMillis = Long.parseLong(value);
+				}else if("-maxHeapMb".equals(arg)){
+					maxHeapMb = Long.parseLong(value);
+				}else if("-maxRetainedMb".equals(arg)){
+					maxRetainedMb = Long.parseLong(value);
+				}else if("-directory".equals(arg)){
+					directory = Paths.get(value);
+				}else{
+					throw new IllegalArgumentException("Unknown argument: " + arg);
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Value of " + arg + " is not a number: " + value);
+			}
+		}
+
+		// A round takes about 0.25 ms and 1.5 kB of peak heap per project on a single core, leave a wide margin.
+		if(maxMillis < 0){
+			maxMillis = 5000 + projectCount;
+		}
+		if(maxHeapMb < 0){
+			maxHeapMb = 32 + projectCount / 200;
+		}
+		// Nothing of a round should stay reachable after it, the margin covers the classes and caches of the JVM.
+		if(maxRetainedMb < 0){
+			maxRetainedMb = 8 + projectCount / 2000;
+		}
+	}
+
+	/**
+	 * Write the tree, run the rounds and check the results.
+	 * @return True if all the checks and budgets passed.
+	 * @throws IOException Error while writing or scanning the tree.
+	 */
+	private boolean run() throws IOException {
+		boolean temporary = directory == null;
+		Path root = temporary ? Files.createTempDirectory("scan-soak") : directory;
+		try {
+			long startTime = System.nanoTime();
+			SyntheticTreeGenerator generator = new SyntheticTreeGenerator(projectCount, seed);
+			generator.generate(root);
+			summary.put("projects", generator.getProjectIds().size());
+			summary.put("plugins", generator.getPluginCount());
+			summary.put("tests", generator.getTestCount());
+			summary.put("features", generator.getFeatureIds().size());
+			summary.put("cycles", generator.getCycleCount());
+			summary.put("generateMillis", millisSince(startTime));
+
+			long slowestMillis = 0;
+			long peakBytes = 0;
+			long retainedBytes = 0;
+			for(int round=0;round<rounds;round++){
+				long usedBefore = usedHeapAfterGc();
+				resetPeakHeap();
+				startTime = System.nanoTime();
+				RoundResult result = runRound(root, generator);
+				long roundMillis = millisSince(startTime);
+				slowestMillis = Math.max(slowestMillis, roundMillis);
+				peakBytes = Math.max(peakBytes, peakHeap());
+
+				if(round == 0){
+					summary.put("firstRoundMillis", roundMillis);
+					check(result, generator);
+				}
+				summary.put("planned", result.importPlan.size());
+
+				// Drop the results first, only what leaked from the round is left.
+				result = null;
+				retainedBytes = Math.max(retainedBytes, usedHeapAfterGc() - usedBefore);
+			}
+			summary.put("slowestRoundMillis", slowestMillis);
+			summary.put("peakHeapMb", peakBytes >> 20);
+			summary.put("retainedHeapMb", retainedBytes >> 20);
+
+			if(slowestMillis > maxMillis){
+				failures.add("round took " + slowestMillis + " ms, budget " + maxMillis + " ms");
+			}
+			if(peakBytes >> 20 > maxHeapMb){
+				failures.add("peak heap " + (peakBytes >> 20) + " MB, budget " + maxHeapMb + " MB");
+			}
+			if(retainedBytes >> 20 > maxRetainedMb){
+				failures.add("retained heap " + (retainedBytes >> 20) + " MB, budget " + maxRetainedMb + " MB");
+			}
+		} finally {
+			if(temporary && !keep){
+				BenchmarkFixtures.deleteTree(root);
+			}
+		}
+
+		StringBuilder line = new StringBuilder("status=").append(failures.isEmpty() ? "OK" : "FAILED");
+		for(Map.Entry<String, Object> entry:summary.entrySet()){
+			line.append(' ').append(entry.getKey()).append('=').append(entry.getValue());
+		}
+		line.append(" maxMillis=").append(maxMillis).append(" maxHeapMb=").append(maxHeapMb)
+				.append(" maxRetainedMb=").append(maxRetainedMb);
+		System.out.println(line);
+		for(String failure:failures){
+			System.err.println("FAILED: " + failure);
+		}
+		return failures.isEmpty();
+	}
+
+	/**
+	 * Scan the tree, build the graph and compute the closures once.
+	 * @param root Root of the tree.
+	 * @param generator Generator that wrote the tree.
+	 * @return Results of the round.
+	 * @throws IOException Error while scanning the tree.
+	 */
+	private RoundResult runRound(Path root, SyntheticTreeGenerator generator) throws IOException {
+		ProjectDefinitionCollector collector = new ProjectDefinitionCollector(null);
+		FSProjectDefinitionProvider provider = FSProjectDefinitionProvider.createStreamingProvider(root.toString(), parallelism,
+				null, new ScanPruningRules());
+		RoundResult result = new RoundResult();
+		provider.setMetricsListener(result.metrics);
+		provider.streamProjectDefinitions(collector);
+		result.projectDefinitions = collector.getProjectDefinitions();
+		DependencyGraph dependencyGraph = new DependencyGraph(result.projectDefinitions.values());
+		ClosureEngine closureEngine = new ClosureEngine(dependencyGraph, true);
+		result.closureEngine = closureEngine;
+
+		List<ProjectDefinition> features = new ArrayList<ProjectDefinition>();
+		for(String featureId:generator.getFeatureIds()){
+			ProjectDefinition feature = result.projectDefinitions.get(featureId);
+			if(feature != null){
+				features.add(feature);
+			}
+		}
+		result.importPlan = closureEngine.createImportPlan(features);
+		result.oneLevelSize = new ClosureEngine(dependencyGraph, true, null, OptionalDependencyMode.ONE_LEVEL)
+				.computeClosure(features).cardinality();
+		result.excludeOptionalSize = new ClosureEngine(dependencyGraph, true, null, OptionalDependencyMode.EXCLUDE)
+				.computeClosure(features).cardinality();
+
+		// Check single projects like the user does in the wizard.
+		Random random = new Random(seed);
+		for(int i=0;i<SELECTION_COUNT;i++){
+			int node = random.nextInt(dependencyGraph.size());
+			result.largestClosure = Math.max(result.largestClosure, closureEngine.getClosure(node).cardinality());
+		}
+		return result;
+	}
+
+	/**
+	 * Check that the scan found exactly the generated projects and that the cycles did not break the plan.
+	 * @param result Results of the first round.
+	 * @param generator Generator that wrote the tree.
+	 */
+	private void check(RoundResult result, SyntheticTreeGenerator generator) {
+		Map<String, ProjectDefinition> projectDefinitions = result.projectDefinitions;
+		if(projectDefinitions.size() != generator.getProjectIds().size()){
+			failures.add("found " + projectDefinitions.size() + " projects, generated " + generator.getProjectIds().size());
+		}
+		int missing = 0;
+		for(String projectId:generator.getProjectIds()){
+			if(!projectDefinitions.containsKey(projectId)){
+				missing++;
+			}
+		}
+		if(missing > 0){
+			failures.add(missing + " generated projects were not found");
+		}
+
+		// Every project of the plan must come after its dependencies, unless the dependency depends back on it.
+		DependencyGraph dependencyGraph = result.importPlan.getDependencyGraph();
+		BitSet planned = new BitSet(dependencyGraph.size());
+		int cycleEdges = 0;
+		for(int i=0;i<result.importPlan.size();i++){
+			planned.set(result.importPlan.getNode(i));
+		}
+		BitSet imported = new BitSet(dependencyGraph.size());
+		for(int i=0;i<result.importPlan.size();i++){
+			int node = result.importPlan.getNode(i);
+			for(int edge=dependencyGraph.getEdgeStart(node);edge<dependencyGraph.getEdgeEnd(node);edge++){
+				int target = dependencyGraph.getEdgeTarget(edge);
+				if(!planned.get(target)){
+					failures.add("dependency " + dependencyGraph.getProject(target).getProjectId() + " of "
+							+ dependencyGraph.getProject(node).getProjectId() + " is missing in the plan");
+					return;
+				}
+				if(!imported.get(target)){
+					if(!result.closureEngine.getClosure(target).get(node)){
+						failures.add("dependency " + dependencyGraph.getProject(target).getProjectId() + " of "
+								+ dependencyGraph.getProject(node).getProjectId() + " is imported after it");
+						return;
+					}
+					cycleEdges++;
+				}
+			}
+			imported.set(node);
+		}
+		if(result.excludeOptionalSize > result.oneLevelSize || result.oneLevelSize > result.importPlan.size()){
+			failures.add("optional dependency modes import " + result.excludeOptionalSize + " (exclude), " + result.oneLevelSize
+					+ " (one level) and " + result.importPlan.size() + " (include) projects");
+		}
+		int exportedPackages = dependencyGraph.getPackageExportIndex().size();
+		if(exportedPackages < generator.getPluginCount()){
+			failures.add("indexed " + exportedPackages + " exported packages of " + generator.getPluginCount() + " plug-ins");
+		}
+		if(generator.getCycleCount() > 0 && cycleEdges == 0){
+			failures.add("the plan contains none of the " + generator.getCycleCount() + " cycles");
+		}
+		summary.put("cycleEdges", cycleEdges);
+		summary.put("largestClosure", result.largestClosure);
+		summary.put("exportedPackages", exportedPackages);
+		summary.put("plannedOneLevel", result.oneLevelSize);
+		summary.put("plannedExcludeOptional", result.excludeOptionalSize);
+		summary.put("directoriesVisited", result.metrics.getCounter(Counter.DIRECTORIES_VISITED));
+		summary.put("filesParsed", result.metrics.getCounter(Counter.FILES_PARSED));
+		summary.put("bytesRead", result.metrics.getCounter(Counter.BYTES_READ));
+	}
+
+	/**
+	 * Return the used heap after a garbage collection.
+	 * @return Used heap in bytes.
+	 */
+	private static long usedHeapAfterGc() {
+		for(int i=0;i<3;i++){
+			System.gc();
+		}
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Reset the peak usage of the heap memory pools.
+	 */
+	private static void resetPeakHeap() {
+		for(MemoryPoolMXBean pool:ManagementFactory.getMemoryPoolMXBeans()){
+			if(pool.getType() == MemoryType.HEAP){
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	/**
+	 * Return the peak heap usage since the last reset, the sum of the peaks of the heap pools.
+	 * The pools do not peak at the same time, so it is an upper bound.
+	 * @return Peak heap usage in bytes.
+	 */
+	private static long peakHeap() {
+		long peak = 0;
+		for(MemoryPoolMXBean pool:ManagementFactory.getMemoryPoolMXBeans()){
+			if(pool.getType() == MemoryType.HEAP){
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+
+	/**
+	 * Return the milliseconds elapsed since a start time.
+	 * @param startTime Start time in nanoseconds.
+	 * @return Elapsed milliseconds.
+	 */
+	private static long millisSince(long startTime) {
+		return (System.nanoTime() - startTime) / 1000000;
+	}
+
+	/**
+	 * <code>RoundResult</code>
+	 * holds the results of one round, until they are checked.
+	 */
+	private static class RoundResult {
+		private Map<String, ProjectDefinition> projectDefinitions;
+		private ClosureEngine closureEngine;
+		private ImportPlan importPlan;
+		private int oneLevelSize;
+		private int excludeOptionalSize;
+		private int largestClosure;
+		private final ImportMetrics metrics = new ImportMetrics();
+	}
+}
@@ -0,0 +1,384 @@
+package org.csstudio.util.importwizard.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+
+/**
+ * <code>SyntheticTreeGenerator</code>
+ * writes a source tree that looks like a CS-Studio checkout, to test the scan and the import at the real scale without a
+ * network checkout.</br>
+ * The plug-ins are grouped into areas under <code>core</code> and <code>applications</code>. They depend mostly on plug-ins
+ * of their own area, on a few widely used core plug-ins and on platform bundles that are not in the tree. The
+ * <code>Require-Bundle</code> headers carry version ranges, optional and reexported bundles and are wrapped into
+ * continuation lines. Plug-ins also import packages exported by earlier plug-ins and platform packages with
+ * <code>Import-Package</code>. About a third of the plug-ins have a <code>.test</code> fragment next to them, every area has
+ * features that include other features, every {@value #CYCLE_INTERVAL}th plug-in forms a dependency cycle with a later
+ * plug-in and the tree contains <code>.git</code> and <code>bin</code> directories the scan should skip.
+ * The same project count and seed always produce the same tree.
+ *
+ */
+public class SyntheticTreeGenerator {
+	/** Every CYCLE_INTERVAL-th plug-in depends on a later plug-in that depends back on it. */
+	public static final int CYCLE_INTERVAL = 100;
+
+	private static final String[] CORE_AREAS = {"apputil", "autocomplete", "csdata", "diirt", "email", "logging", "platform",
+			"security", "ui.util", "utility"};
+	private static final String[] APPLICATION_AREAS = {"alarm.beast", "archive", "channel", "display.builder", "diag",
+			"logbook", "opibuilder", "pvmanager", "scan", "sns", "trends.databrowser", "ui.menu", "utility.pvmanager", "wavegen"};
+	private static final String[] COMPONENTS = {"core", "ui", "model", "client", "server", "editor", "runtime", "widgets",
+			"preferences", "rdb", "viewer", "config", "export", "help", "ioc", "jms"};
+	private static final String[] PLATFORM_BUNDLES = {"org.eclipse.core.runtime", "org.eclipse.ui", "org.eclipse.swt",
+			"org.eclipse.jface", "org.eclipse.core.resources", "org.eclipse.ui.ide", "org.apache.commons.lang3", "com.google.guava"};
+	private static final String[] VERSION_ATTRIBUTES = {"", ";bundle-version=\"1.0.0\"", ";bundle-version=\"[3.6.0,4.0.0)\"",
+			";bundle-version=\"3.100.0\";resolution:=optional", ";visibility:=reexport", ";bundle-version=\"[1.0.0,2.0.0)\";visibility:=reexport"};
+	private static final String[] PLATFORM_PACKAGES = {"org.osgi.framework;version=\"1.3.0\"", "javax.xml.stream",
+			"org.slf4j;version=\"[1.7.0,2.0.0)\"", "org.osgi.service.event;resolution:=optional"};
+	private static final String JUNIT_BUNDLE = "org.junit;bundle-version=\"4.8.0\"";
+	private static final int HUB_COUNT = 20;
+	private static final int FEATURE_INTERVAL = 20;
+	private static final int MAX_PLUGIN_DEPENDENCIES = 12;
+	private static final int MAX_FEATURE_PLUGINS = 16;
+	private static final int MAX_IMPORTED_PACKAGES = 4;
+	private static final double TEST_PROBABILITY = 0.3;
+
+	private final int projectCount;
+	private final long seed;
+
+	private final List<String> projectIds = new ArrayList<String>();
+	private final List<String> featureIds = new ArrayList<String>();
+	private int pluginCount;
+	private int testCount;
+	private int cycleCount;
+
+	/**
+	 * Constructs the generator.
+	 * @param projectCount Number of projects to write, plug-ins, tests and features together.
+	 * @param seed Seed of the random names and dependencies.
+	 */
+	public SyntheticTreeGenerator(int projectCount, long seed) {
+		if(projectCount < 1){
+			throw new IllegalArgumentException("Project count must be positive: " + projectCount);
+		}
+		this.projectCount = projectCount;
+		this.seed = seed;
+	}
+
+	/**
+	 * Write the tree. The ids of the projects and the counts are available when the method returns.
+	 * @param root Directory to write the tree into, it should be empty.
+	 * @throws IOException Error while writing the files.
+	 */
+	public void generate(Path root) throws IOException {
+		projectIds.clear();
+		featureIds.clear();
+		pluginCount = 0;
+		testCount = 0;
+		cycleCount = 0;
+
+		Random random = new Random(seed);
+		List<Project> projects = createProjects(random);
+		addCycles(projects, random);
+
+		BenchmarkFixtures.write(root.resolve(".git/HEAD"), "ref: refs/heads/master\n");
+		BenchmarkFixtures.writeProjectFile(root.resolve(".git/modules/stale"), "org.csstudio.stale.checkout");
+		for(Project project:projects){
+			writeProject(root, project);
+			projectIds.add(project.id);
+		}
+	}
+
+	/**
+	 * Create the projects with their dependencies. The plug-ins depend only on the plug-ins created before them.
+	 * @param random Random generator.
+	 * @return Created projects.
+	 */
+	private List<Project> createProjects(Random random) {
+		List<Project> projects = new ArrayList<Project>(projectCount);
+		List<Project> plugins = new ArrayList<Project>();
+		Map<String, List<Project>> areaPlugins = new HashMap<String, List<Project>>();
+		Map<String, List<Project>> areaFeatures = new HashMap<String, List<Project>>();
+		Map<String, Integer> nameCounts = new HashMap<String, Integer>();
+
+		while(projects.size() < projectCount){
+			boolean core = random.nextInt(3) == 0;
+			String area = core ? CORE_AREAS[random.nextInt(CORE_AREAS.length)] : APPLICATION_AREAS[random.nextInt(APPLICATION_AREAS.length)];
+			String group = (core ? "core/" : "applications/") + area;
+			if(!areaPlugins.containsKey(area)){
+				areaPlugins.put(area, new ArrayList<Project>());
+				areaFeatures.put(area, new ArrayList<Project>());
+			}
+
+			if(projects.size() % FEATURE_INTERVAL == FEATURE_INTERVAL - 1){
+				String id = uniqueName(nameCounts, "org.csstudio." + area) + ".feature";
+				Project feature = new Project(id, group + "/features/" + id, Project.FEATURE);
+				List<Project> candidates = areaPlugins.get(area).isEmpty() ? plugins : areaPlugins.get(area);
+				for(int i=Math.min(candidates.size(), 1 + random.nextInt(MAX_FEATURE_PLUGINS));i>0;i--){
+					feature.plugins.add(candidates.get(random.nextInt(candidates.size())).id);
+				}
+				for(int i=random.nextInt(3);i>0 && !plugins.isEmpty();i--){
+					feature.imports.add(plugins.get(random.nextInt(Math.min(plugins.size(), HUB_COUNT))).id);
+				}
+				List<Project> features = areaFeatures.get(area);
+				if(!features.isEmpty()){
+					feature.includes.add(features.get(random.nextInt(features.size())).id);
+				}
+				if(!featureIds.isEmpty() && random.nextInt(4) == 0){
+					feature.includes.add(featureIds.get(random.nextInt(featureIds.size())));
+				}
+				features.add(feature);
+				featureIds.add(id);
+				projects.add(feature);
+				continue;
+			}
+
+			String id = uniqueName(nameCounts, "org.csstudio." + area + "." + COMPONENTS[random.nextInt(COMPONENTS.length)]);
+			Project plugin = new Project(id, group + "/plugins/" + id, Project.PLUGIN);
+			List<Project> sameArea = areaPlugins.get(area);
+			for(int i=1 + random.nextInt(MAX_PLUGIN_DEPENDENCIES);i>0 && !plugins.isEmpty();i--){
+				int choice = random.nextInt(20);
+				if(choice < 12 && !sameArea.isEmpty()){
+					plugin.dependencies.add(sameArea.get(random.nextInt(sameArea.size())).id + randomAttributes(random));
+				}else if(choice < 17){
+					plugin.dependencies.add(plugins.get(random.nextInt(Math.min(plugins.size(), HUB_COUNT))).id + randomAttributes(random));
+				}else{
+					plugin.dependencies.add(plugins.get(random.nextInt(plugins.size())).id + randomAttributes(random));
+				}
+			}
+			for(int i=random.nextInt(3);i>0;i--){
+				plugin.dependencies.add(PLATFORM_BUNDLES[random.nextInt(PLATFORM_BUNDLES.length)] + randomAttributes(random));
+			}
+			for(int i=random.nextInt(MAX_IMPORTED_PACKAGES + 1);i>0 && !plugins.isEmpty();i--){
+				if(random.nextBoolean()){
+					plugin.importedPackages.add(plugins.get(random.nextInt(plugins.size())).id);
+				}else{
+					plugin.importedPackages.add(PLATFORM_PACKAGES[random.nextInt(PLATFORM_PACKAGES.length)]);
+				}
+			}
+			sameArea.add(plugin);
+			plugins.add(plugin);
+			projects.add(plugin);
+			pluginCount++;
+
+			if(projects.size() < projectCount && random.nextDouble() < TEST_PROBABILITY){
+				Project test = new Project(id + ".test", group + "/plugins/" + id + ".test", Project.TEST);
+				test.fragmentHost = id;
+				test.dependencies.add(JUNIT_BUNDLE);
+				test.dependencies.add(id);
+				if(random.nextBoolean()){
+					test.dependencies.add(plugins.get(random.nextInt(Math.min(plugins.size(), HUB_COUNT))).id);
+				}
+				projects.add(test);
+				testCount++;
+			}
+		}
+		return projects;
+	}
+
+	/**
+	 * Close a cycle at every {@value #CYCLE_INTERVAL}th plug-in: the plug-in and a later plug-in require each other.
+	 * @param projects Created projects.
+	 * @param random Random generator.
+	 */
+	private void addCycles(List<Project> projects, Random random) {
+		List<Project> plugins = new ArrayList<Project>();
+		for(Project project:projects){
+			if(project.kind == Project.PLUGIN){
+				plugins.add(project);
+			}
+		}
+		for(int i=CYCLE_INTERVAL / 2;i<plugins.size() - 1;i+=CYCLE_INTERVAL){
+			Project earlier = plugins.get(i);
+			Project later = plugins.get(i + 1 + random.nextInt(Math.min(CYCLE_INTERVAL, plugins.size() - i - 1)));
+			earlier.dependencies.add(later.id + ";bundle-version=\"1.0.0\"");
+			later.dependencies.add(earlier.id);
+			cycleCount++;
+		}
+	}
+
+	/**
+	 * Write the files of a project.
+	 * @param root Root of the tree.
+	 * @param project Project to write.
+	 * @throws IOException Error while writing the files.
+	 */
+	private static void writeProject(Path root, Project project) throws IOException {
+		Path directory = root.resolve(project.directory);
+		BenchmarkFixtures.writeProjectFile(directory, project.id);
+		if(project.kind == Project.FEATURE){
+			BenchmarkFixtures.write(directory.resolve("feature.xml"), BenchmarkFixtures.featureXml(project.id,
+					new ArrayList<String>(project.imports), new ArrayList<String>(project.plugins), new ArrayList<String>(project.includes)));
+			BenchmarkFixtures.write(directory.resolve("build.properties"), "bin.includes = feature.xml\n");
+			return;
+		}
+
+		BenchmarkFixtures.write(directory.resolve("META-INF/MANIFEST.MF"), manifest(project));
+		String packagePath = project.id.replace('.', '/');
+		BenchmarkFixtures.write(directory.resolve("src/" + packagePath + "/Activator.java"), "package " + project.id + ";\n");
+		BenchmarkFixtures.write(directory.resolve("bin/" + packagePath + "/Activator.class"), "");
+		BenchmarkFixtures.write(directory.resolve("build.properties"), "source.. = src/\noutput.. = bin/\n"
+				+ "bin.includes = META-INF/,\\\n               .\n");
+	}
+
+	/**
+	 * Create the manifest of a plug-in or test fragment. Every required bundle starts on its own continuation line like in
+	 * the manifests written by PDE, and lines longer than 72 characters are wrapped.
+	 * @param project Plug-in or test fragment.
+	 * @return Manifest text.
+	 */
+	private static String manifest(Project project) {
+		StringBuilder manifest = new StringBuilder();
+		BenchmarkFixtures.appendHeader(manifest, "Manifest-Version: 1.0");
+		BenchmarkFixtures.appendHeader(manifest, "Bundle-ManifestVersion: 2");
+		BenchmarkFixtures.appendHeader(manifest, "Bundle-Name: " + project.id.substring(project.id.lastIndexOf('.') + 1));
+		BenchmarkFixtures.appendHeader(manifest, "Bundle-SymbolicName: " + project.id + ";singleton:=true");
+		BenchmarkFixtures.appendHeader(manifest, "Bundle-Version: 4.1.0.qualifier");
+		BenchmarkFixtures.appendHeader(manifest, "Bundle-Vendor: Synthetic");
+		if(project.fragmentHost != null){
+			BenchmarkFixtures.appendHeader(manifest, "Fragment-Host: " + project.fragmentHost + ";bundle-version=\"4.1.0\"");
+		}
+		if(!project.dependencies.isEmpty()){
+			StringBuilder header = new StringBuilder("Require-Bundle: ");
+			String separator = "";
+			for(String dependency:project.dependencies){
+				header.append(separator).append(dependency);
+				separator = ",\n ";
+			}
+			BenchmarkFixtures.appendHeader(manifest, header.toString());
+		}
+		if(!project.importedPackages.isEmpty()){
+			StringBuilder header = new StringBuilder("Import-Package: ");
+			String separator = "";
+			for(String importedPackage:project.importedPackages){
+				header.append(separator).append(importedPackage);
+				separator = ",\n ";
+			}
+			BenchmarkFixtures.appendHeader(manifest, header.toString());
+		}
+		if(project.kind == Project.PLUGIN){
+			BenchmarkFixtures.appendHeader(manifest, "Export-Package: " + project.id + ";version=\"4.1.0\",\n " + project.id
+					+ ".internal;x-internal:=true");
+		}
+		BenchmarkFixtures.appendHeader(manifest, "Bundle-RequiredExecutionEnvironment: JavaSE-1.7");
+		BenchmarkFixtures.appendHeader(manifest, "Bundle-ActivationPolicy: lazy");
+		return manifest.append("\n").toString();
+	}
+
+	/**
+	 * Return the attributes and directives of a random required bundle.
+	 * @param random Random generator.
+	 * @return Attributes, starting with a semicolon, or an empty string.
+	 */
+	private static String randomAttributes(Random random) {
+		return VERSION_ATTRIBUTES[random.nextInt(VERSION_ATTRIBUTES.length)];
+	}
+
+	/**
+	 * Return a name that was not returned before, by adding a number to the repeated names.
+	 * @param nameCounts Number of times every name was used.
+	 * @param name Name to make unique.
+	 * @return Unique name.
+	 */
+	private static String uniqueName(Map<String, Integer> nameCounts, String name) {
+		Integer count = nameCounts.get(name);
+		nameCounts.put(name, count == null ? 1 : count + 1);
+		return count == null ? name : name + count;
+	}
+
+	/**
+	 * Return the ids of the written projects.
+	 * @return Project ids in the order they were written.
+	 */
+	public List<String> getProjectIds() {
+		return Collections.unmodifiableList(projectIds);
+	}
+
+	/**
+	 * Return the ids of the written features.
+	 * @return Feature ids.
+	 */
+	public List<String> getFeatureIds() {
+		return Collections.unmodifiableList(featureIds);
+	}
+
+	/**
+	 * Return the number of written plug-ins, without the test fragments.
+	 * @return Number of plug-ins.
+	 */
+	public int getPluginCount() {
+		return pluginCount;
+	}
+
+	/**
+	 * Return the number of written <code>.test</code> fragments.
+	 * @return Number of test projects.
+	 */
+	public int getTestCount() {
+		return testCount;
+	}
+
+	/**
+	 * Return the number of dependency cycles in the tree.
+	 * @return Number of cycles.
+	 */
+	public int getCycleCount() {
+		return cycleCount;
+	}
+
+	/**
+	 * Write a tree from the command line.
+	 * @param args Directory, project count and optionally the seed.
+	 * @throws IOException Error while writing the files.
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 2){
+			System.err.println("Arguments: <directory> <projectCount> [seed]");
+			System.exit(1);
+		}
+		SyntheticTreeGenerator generator = new SyntheticTreeGenerator(Integer.parseInt(args[1]), args.length > 2 ? Long.parseLong(args[2]) : 42);
+		generator.generate(Paths.get(args[0]));
+		System.out.println("projects=" + generator.getProjectIds().size() + " plugins=" + generator.getPluginCount() + " tests="
+				+ generator.getTestCount() + " features=" + generator.getFeatureIds().size() + " cycles=" + generator.getCycleCount());
+	}
+
+	/**
+	 * <code>Project</code>
+	 * is a project of the tree before it is written.
+	 */
+	private static class Project {
+		static final int PLUGIN = 0;
+		static final int TEST = 1;
+		static final int FEATURE = 2;
+
+		private final String id;
+		private final String directory;
+		private final int kind;
+		private final Set<String> dependencies = new LinkedHashSet<String>();
+		private final Set<String> importedPackages = new LinkedHashSet<String>();
+		private final Set<String> plugins = new LinkedHashSet<String>();
+		private final Set<String> imports = new LinkedHashSet<String>();
+		private final Set<String> includes = new LinkedHashSet<String>();
+		private String fragmentHost;
+
+		/**
+		 * Constructs the project.
+		 * @param id Project id.
+		 * @param directory Directory of the project relative to the root.
+		 * @param kind {@link #PLUGIN}, {@link #TEST} or {@link #FEATURE}.
+		 */
+		Project(String id, String directory, int kind) {
+			this.id = id;
+			this.directory = directory;
+			this.kind = kind;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package org.csstudio.util.importwizard.project.provider;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.csstudio.util.importwizard.benchmark.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * <code>DescriptorParseBenchmark</code>
+ * measures the parsing of a single bundle manifest, feature descriptor and <code>.project</code> file.</br>
+ * It lives in the provider package to call the package private parsers directly. The standard output is discarded
+ * while it runs, the parsers still pay for what they print.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DescriptorParseBenchmark {
+	@Param({"10", "100"})
+	private int dependencyCount;
+
+	private Path directory;
+	private Path manifestPath;
+	private Path featurePath;
+	private Path projectFile;
+
+	/**
+	 * Write the descriptors.
+	 * @throws IOException Error while writing the files.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("descriptor-benchmark");
+		List<String> dependencies = new ArrayList<String>();
+		for(int i=0;i<dependencyCount;i++){
+			dependencies.add("org.csstudio.benchmark.dependency" + i);
+		}
+		manifestPath = directory.resolve("META-INF/MANIFEST.MF");
+		BenchmarkFixtures.write(manifestPath, BenchmarkFixtures.manifest("org.csstudio.benchmark", dependencies));
+		featurePath = directory.resolve("feature.xml");
+		BenchmarkFixtures.write(featurePath, BenchmarkFixtures.featureXml("org.csstudio.benchmark.feature",
+				dependencies.subList(0, dependencyCount / 2), dependencies.subList(dependencyCount / 2, dependencyCount),
+				new ArrayList<String>()));
+		BenchmarkFixtures.writeProjectFile(directory, "org.csstudio.benchmark");
+		projectFile = directory.resolve(".project");
+	}
+
+	/**
+	 * Delete the descriptors.
+	 * @throws IOException Error while deleting the files.
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		BenchmarkFixtures.deleteTree(directory);
+	}
+
+	/**
+	 * Parse the Require-Bundle header of the manifest.
+	 * @return Parsed dependencies.
+	 * @throws IOException Error while reading the file.
+	 */
+	@Benchmark
+	public List<String> parseManifest() throws IOException {
+		List<String> dependencies = new ArrayList<String>();
+		FSProjectDefinitionProvider.processPluginManifest(dependencies, manifestPath);
+		return dependencies;
+	}
+
+	/**
+	 * Parse the feature descriptor.
+	 * @return Parsed dependencies.
+	 * @throws IOException Error while reading the file.
+	 */
+	@Benchmark
+	public List<String> parseFeature() throws IOException {
+		List<String> dependencies = new ArrayList<String>();
+		FSProjectDefinitionProvider.processFeatureDescriptor(dependencies, featurePath);
+		return dependencies;
+	}
+
+	/**
+	 * Read the project name.
+	 * @return Project name.
+	 * @throws IOException Error while reading the file.
+	 */
+	@Benchmark
+	public String readProjectName() throws IOException {
+		return ProjectNameReader.readProjectName(projectFile);
+	}
+}
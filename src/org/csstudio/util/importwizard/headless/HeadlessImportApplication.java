@@ -0,0 +1,387 @@
+package org.csstudio.util.importwizard.headless;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.csstudio.util.importwizard.project.DependencyGraph;
+import org.csstudio.util.importwizard.project.ProjectDefinition;
+import org.csstudio.util.importwizard.project.importer.ClosureEngine;
+import org.csstudio.util.importwizard.project.importer.IImportMonitor;
+import org.csstudio.util.importwizard.project.importer.ImportPlan;
+import org.csstudio.util.importwizard.project.importer.OptionalDependencyMode;
+import org.csstudio.util.importwizard.project.importer.ProjectImporter;
+import org.csstudio.util.importwizard.project.importer.TargetPlatformBundles;
+import org.csstudio.util.importwizard.project.provider.FSProjectDefinitionProvider;
+import org.csstudio.util.importwizard.project.provider.ProjectDefinitionCollector;
+import org.csstudio.util.importwizard.project.provider.ScanPruningRules;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+
+
+/**
+ * <code>HeadlessImportApplication</code>
+ * imports projects with their dependencies into the workspace without the UI, for scripted workspace provisioning.</br>
+ * Run it with <code>-application org.csstudio.util.importwizard.headlessImport -data &lt;workspace&gt;</code> and the arguments
+ * listed in {@link #USAGE}. The application prints one line with the timing summary, <code>key=value</code> pairs separated
+ * by spaces, and exits with a non-zero status if the arguments are wrong, the scan fails, a requested project is not
+ * found or not all the projects of the plan were imported.</br>
+ * Projects that already exist in the workspace at the same location count as imported, so the same import can be run
+ * again. A project with the same name at another location is reported as a conflict and fails the import.
+ *
+ */
+public class HeadlessImportApplication implements IApplication {
+	/** Exit status for wrong arguments. */
+	public static final Integer EXIT_USAGE = 1;
+	/** Exit status for a failed scan. */
+	public static final Integer EXIT_SCAN_FAILED = 2;
+	/** Exit status for a requested project that was not found. */
+	public static final Integer EXIT_PROJECT_NOT_FOUND = 3;
+	/** Exit status for an incomplete import. */
+	public static final Integer EXIT_IMPORT_FAILED = 4;
+
+	private static final String USAGE = "Arguments: -root <path> [-root <path> ...] -projects <id|glob>[,<id|glob>...] "
+			+ "[-includeTests] [-scanParallelism <n>] [-importParallelism <n>] [-keepAutoBuild] [-targetBundles <file> | -skipTargetPlatform] "
+			+ "[-optionalDependencies include|exclude|oneLevel]";
+
+	private final Map<String, Object> summary = new LinkedHashMap<String, Object>();
+
+	@Override
+	public Object start(IApplicationContext context) throws Exception {
+		context.applicationRunning();
+		long startTime = System.nanoTime();
+		String[] args = (String[]) context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+
+		Arguments arguments;
+		try {
+			arguments = new Arguments(args == null ? new String[0] : args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			return finish(EXIT_USAGE, "USAGE", startTime);
+		}
+
+		// Scan all the roots into one map.
+		long phaseStart = System.nanoTime();
+		Map<String, ProjectDefinition> projectDefinitions;
+		try {
+			projectDefinitions = scanRoots(arguments);
+		} catch (IOException e) {
+			System.err.println("Scan failed: " + e);
+			return finish(EXIT_SCAN_FAILED, "SCAN_FAILED", startTime);
+		}
+		summary.put("projectsFound", projectDefinitions.size());
+		summary.put("scanMillis", millisSince(phaseStart));
+
+		// Resolve the requested projects and create the plan.
+		phaseStart = System.nanoTime();
+		DependencyGraph dependencyGraph = new DependencyGraph(projectDefinitions.values());
+		// Overlapping patterns request a project only once.
+		Set<ProjectDefinition> requestedProjects = new LinkedHashSet<ProjectDefinition>();
+		for(String pattern:arguments.projectPatterns){
+			List<ProjectDefinition> matches = findProjects(dependencyGraph, pattern);
+			if(matches.isEmpty()){
+				System.err.println("No project matches " + pattern);
+				return finish(EXIT_PROJECT_NOT_FOUND, "PROJECT_NOT_FOUND", startTime);
+			}
+			requestedProjects.addAll(matches);
+		}
+		TargetPlatformBundles targetPlatformBundles;
+		try {
+			targetPlatformBundles = readTargetPlatformBundles(arguments);
+		} catch (IOException e) {
+			System.err.println("Reading the bundle list failed: " + e);
+			return finish(EXIT_USAGE, "USAGE", startTime);
+		}
+		ImportPlan importPlan = new ClosureEngine(dependencyGraph, arguments.includeTests,
+				targetPlatformBundles == null ? null : targetPlatformBundles.getProvidedNodes(dependencyGraph),
+				arguments.optionalDependencyMode).createImportPlan(requestedProjects);
+		summary.put("projectsRequested", requestedProjects.size());
+		if(targetPlatformBundles != null){
+			summary.put("targetBundles", targetPlatformBundles.size());
+			summary.put("projectsBeforeTargetCut", new ClosureEngine(dependencyGraph, arguments.includeTests, null,
+					arguments.optionalDependencyMode).computeClosure(requestedProjects).cardinality());
+		}
+		summary.put("projectsPlanned", importPlan.size());
+		summary.put("planMillis", millisSince(phaseStart));
+
+		// Import, build and save the workspace.
+		phaseStart = System.nanoTime();
+		final AtomicInteger importedCount = new AtomicInteger();
+		ProjectImporter projectImporter = new ProjectImporter(dependencyGraph);
+		projectImporter.setBatchImport(true);
+		projectImporter.setImportParallelism(arguments.importParallelism);
+		projectImporter.setSuspendAutoBuild(!arguments.keepAutoBuild);
+		projectImporter.setProgressMonitor(new IImportMonitor() {
+			@Override
+			public void notifyImportCompleted(String projectId) {
+				importedCount.incrementAndGet();
+			}
+		});
+		IStatus importStatus = projectImporter.importPlan(importPlan);
+		summary.put("projectsImported", importedCount.get());
+		summary.put("importMillis", millisSince(phaseStart));
+
+		phaseStart = System.nanoTime();
+		try {
+			ResourcesPlugin.getWorkspace().save(true, null);
+		} catch (CoreException e) {
+			System.err.println("Saving the workspace failed: " + e.getMessage());
+			return finish(EXIT_IMPORT_FAILED, "SAVE_FAILED", startTime);
+		}
+		summary.put("saveMillis", millisSince(phaseStart));
+
+		printFailures(importStatus);
+		if(importStatus.matches(IStatus.ERROR | IStatus.CANCEL) || importedCount.get() < importPlan.size()){
+			System.err.println((importPlan.size() - importedCount.get()) + " of " + importPlan.size() + " projects were not imported.");
+			return finish(EXIT_IMPORT_FAILED, "IMPORT_FAILED", startTime);
+		}
+		return finish(EXIT_OK, "OK", startTime);
+	}
+
+	/**
+	 * Print the failures of the import with their causes.
+	 * @param importStatus Status returned by the import.
+	 */
+	private static void printFailures(IStatus importStatus) {
+		IStatus[] failures = importStatus.isMultiStatus() ? importStatus.getChildren() : new IStatus[]{importStatus};
+		for(IStatus failure:failures){
+			if(!failure.isOK()){
+				Throwable cause = failure.getException();
+				System.err.println(failure.getMessage() + (cause == null ? "" : " " + cause.getMessage()));
+			}
+		}
+	}
+
+	@Override
+	public void stop() {
+		// The import cannot be interrupted, the application stops when it is done.
+	}
+
+	/**
+	 * Scan the root paths. If several projects have the same id, the one with the first path in alphabetical order is kept.
+	 * @param arguments Parsed arguments.
+	 * @return Found projects, key=projectId, value=ProjectDefinition.
+	 * @throws IOException In case of file system read error.
+	 */
+	private static Map<String, ProjectDefinition> scanRoots(Arguments arguments) throws IOException {
+		ProjectDefinitionCollector collector = new ProjectDefinitionCollector(null);
+		for(String root:arguments.roots){
+			FSProjectDefinitionProvider provider = FSProjectDefinitionProvider.createStreamingProvider(root,
+					arguments.scanParallelism, null, new ScanPruningRules());
+			provider.streamProjectDefinitions(collector);
+			for(String warning:provider.getScanWarnings()){
+				System.err.println(warning);
+			}
+		}
+		return collector.getProjectDefinitions();
+	}
+
+	/**
+	 * Read the bundles of the target platform whose projects are not imported as dependencies.
+	 * @param arguments Parsed arguments.
+	 * @return Bundles of the <code>-targetBundles</code> list or of the active target platform with <code>-skipTargetPlatform</code>,
+	 * null if neither is given or PDE is not installed.
+	 * @throws IOException Error while reading the bundle list.
+	 */
+	private static TargetPlatformBundles readTargetPlatformBundles(Arguments arguments) throws IOException {
+		if(arguments.targetBundleList != null){
+			return TargetPlatformBundles.fromBundleList(Paths.get(arguments.targetBundleList));
+		}
+		if(arguments.skipTargetPlatform){
+			TargetPlatformBundles targetPlatformBundles = TargetPlatformBundles.fromActiveTarget();
+			if(targetPlatformBundles == null){
+				System.err.println("PDE is not installed, all the dependencies are imported.");
+			}
+			return targetPlatformBundles;
+		}
+		return null;
+	}
+
+	/**
+	 * Find the projects matching an id or a glob.
+	 * @param dependencyGraph Graph of the scanned projects.
+	 * @param pattern Project id or glob, e.g. <code>org.csstudio.display.*</code>.
+	 * @return Matching projects, empty if there are none.
+	 */
+	private static List<ProjectDefinition> findProjects(DependencyGraph dependencyGraph, String pattern) {
+		if(!isGlob(pattern)){
+			int node = dependencyGraph.getNode(pattern);
+			return node < 0 ? Collections.<ProjectDefinition>emptyList() : Collections.singletonList(dependencyGraph.getProject(node));
+		}
+
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+		List<ProjectDefinition> matches = new ArrayList<ProjectDefinition>();
+		for(int node=0;node<dependencyGraph.size();node++){
+			ProjectDefinition project = dependencyGraph.getProject(node);
+			if(matcher.matches(Paths.get(project.getProjectId()))){
+				matches.add(project);
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Check if the pattern contains glob characters.
+	 * @param pattern Project id or glob.
+	 * @return True if the pattern is a glob.
+	 */
+	private static boolean isGlob(String pattern) {
+		for(char c:"*?[{".toCharArray()){
+			if(pattern.indexOf(c) >= 0){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Print the summary line and return the exit status.
+	 * @param exitStatus Exit status of the application.
+	 * @param status Status name printed in the summary.
+	 * @param startTime Start time of the application in nanoseconds.
+	 * @return The exit status.
+	 */
+	private Integer finish(Integer exitStatus, String status, long startTime) {
+		summary.put("totalMillis", millisSince(startTime));
+		StringBuilder line = new StringBuilder("status=").append(status);
+		for(Map.Entry<String, Object> entry:summary.entrySet()){
+			line.append(' ').append(entry.getKey()).append('=').append(entry.getValue());
+		}
+		line.append(" exitStatus=").append(exitStatus);
+		System.out.println(line);
+		return exitStatus;
+	}
+
+	/**
+	 * Return the milliseconds elapsed since a start time.
+	 * @param startTime Start time in nanoseconds.
+	 * @return Elapsed milliseconds.
+	 */
+	private static long millisSince(long startTime) {
+		return (System.nanoTime() - startTime) / 1000000;
+	}
+
+	/**
+	 * <code>Arguments</code>
+	 * are the parsed command line arguments of the application.
+	 */
+	private static class Arguments {
+		private final List<String> roots = new ArrayList<String>();
+		private final Set<String> projectPatterns = new LinkedHashSet<String>();
+		private boolean includeTests = false;
+		private boolean keepAutoBuild = false;
+		private String targetBundleList;
+		private boolean skipTargetPlatform = false;
+		private OptionalDependencyMode optionalDependencyMode = OptionalDependencyMode.INCLUDE;
+		private int scanParallelism = Runtime.getRuntime().availableProcessors();
+		private int importParallelism = Runtime.getRuntime().availableProcessors();
+
+		/**
+		 * Parse the arguments.
+		 * @param args Application arguments.
+		 * @throws IllegalArgumentException If the arguments are wrong or incomplete.
+		 */
+		Arguments(String[] args) {
+			for(int i=0;i<args.length;i++){
+				String arg = args[i];
+				if("-root".equals(arg)){
+					roots.add(getValue(args, ++i, arg));
+				}else if("-projects".equals(arg)){
+					for(String pattern:getValue(args, ++i, arg).split(",")){
+						if(!pattern.trim().isEmpty()){
+							projectPatterns.add(pattern.trim());
+						}
+					}
+				}else if("-includeTests".equals(arg)){
+					includeTests = true;
+				}else if("-keepAutoBuild".equals(arg)){
+					keepAutoBuild = true;
+				}else if("-targetBundles".equals(arg)){
+					targetBundleList = getValue(args, ++i, arg);
+				}else if("-skipTargetPlatform".equals(arg)){
+					skipTargetPlatform = true;
+				}else if("-optionalDependencies".equals(arg)){
+					optionalDependencyMode = getOptionalDependencyMode(args, ++i, arg);
+				}else if("-scanParallelism".equals(arg)){
+					scanParallelism = getIntValue(args, ++i, arg);
+				}else if("-importParallelism".equals(arg)){
+					importParallelism = getIntValue(args, ++i, arg);
+				}else{
+					throw new IllegalArgumentException("Unknown argument: " + arg);
+				}
+			}
+
+			if(roots.isEmpty()){
+				throw new IllegalArgumentException("At least one -root is required.");
+			}
+			if(projectPatterns.isEmpty()){
+				throw new IllegalArgumentException("At least one project id or glob is required in -projects.");
+			}
+			if(targetBundleList != null && skipTargetPlatform){
+				throw new IllegalArgumentException("Only one of -targetBundles and -skipTargetPlatform can be given.");
+			}
+		}
+
+		/**
+		 * Return the value of an argument.
+		 * @param args Application arguments.
+		 * @param index Index of the value.
+		 * @param name Name of the argument.
+		 * @return Value of the argument.
+		 */
+		private static String getValue(String[] args, int index, String name) {
+			if(index >= args.length || args[index].isEmpty()){
+				throw new IllegalArgumentException("Missing value of " + name);
+			}
+			return args[index];
+		}
+
+		/**
+		 * Return the optional dependency mode of an argument.
+		 * @param args Application arguments.
+		 * @param index Index of the value.
+		 * @param name Name of the argument.
+		 * @return Mode of the value <code>include</code>, <code>exclude</code> or <code>oneLevel</code>.
+		 */
+		private static OptionalDependencyMode getOptionalDependencyMode(String[] args, int index, String name) {
+			String value = getValue(args, index, name);
+			if("include".equals(value)){
+				return OptionalDependencyMode.INCLUDE;
+			}else if("exclude".equals(value)){
+				return OptionalDependencyMode.EXCLUDE;
+			}else if("oneLevel".equals(value)){
+				return OptionalDependencyMode.ONE_LEVEL;
+			}
+			throw new IllegalArgumentException("Value of " + name + " must be include, exclude or oneLevel: " + value);
+		}
+
+		/**
+		 * Return the integer value of an argument.
+		 * @param args Application arguments.
+		 * @param index Index of the value.
+		 * @param name Name of the argument.
+		 * @return Value of the argument.
+		 */
+		private static int getIntValue(String[] args, int index, String name) {
+			String value = getValue(args, index, name);
+			try {
+				return Integer.parseInt(value);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Value of " + name + " is not a number: " + value);
+			}
+		}
+	}
+}
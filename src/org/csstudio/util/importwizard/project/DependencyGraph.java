@@ -0,0 +1,246 @@
+package org.csstudio.util.importwizard.project;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <code>DependencyGraph</code>
+ * is the compact dependency graph of the loaded {@link org.csstudio.util.importwizard.project.ProjectDefinition ProjectDefinition}s.</br>
+ * Every project is interned to an int node. The edges are stored in compressed adjacency arrays: the dependencies of
+ * node <code>n</code> are <code>getEdgeTarget(e)</code> for <code>e</code> from <code>getEdgeStart(n)</code> to <code>getEdgeEnd(n)</code>.
+ * The imported packages of a project are resolved through a {@link org.csstudio.util.importwizard.project.PackageExportIndex PackageExportIndex}
+ * to an edge to one loaded project exporting them, see {@link #resolveExporter(int, String, int[])}, so split and
+ * re-exported packages do not pull in all their providers. Edges of optional dependencies are flagged, see {@link #isOptionalEdge(int)}.
+ * Dependencies on projects that were not loaded are dropped, as they cannot be imported.
+ *
+ */
+public class DependencyGraph {
+	private static final String TEST_PROJECT_SUFFIX = ".test";
+
+	private final ProjectDefinition[] projects;
+	private final Map<String, Integer> nodes;
+	private final int[] edgeOffsets;
+	private final int[] edgeTargets;
+	private final BitSet optionalEdges;
+	private final int[] testProjects;
+	private final PackageExportIndex packageExportIndex;
+
+	/**
+	 * Build the graph of the projects, indexing the packages they export.
+	 * @param projectDefinitions Projects in the graph. Project ids must be unique.
+	 */
+	public DependencyGraph(Collection<ProjectDefinition> projectDefinitions) {
+		this(projectDefinitions, new PackageExportIndex(projectDefinitions));
+	}
+
+	/**
+	 * Build the graph of the projects.
+	 * @param projectDefinitions Projects in the graph. Project ids must be unique.
+	 * @param packageExportIndex Exporters of the packages the projects import.
+	 */
+	public DependencyGraph(Collection<ProjectDefinition> projectDefinitions, PackageExportIndex packageExportIndex) {
+		this.packageExportIndex = packageExportIndex;
+		int nodeCount = projectDefinitions.size();
+		projects = projectDefinitions.toArray(new ProjectDefinition[nodeCount]);
+		nodes = new HashMap<String, Integer>(nodeCount * 2);
+		for(int node=0;node<nodeCount;node++){
+			if(nodes.put(projects[node].getProjectId(), node) != null){
+				throw new IllegalArgumentException("Duplicate project id: " + projects[node].getProjectId());
+			}
+		}
+
+		// Count the resolvable edges first, so the targets fit in a single array.
+		int edgeCount = 0;
+		for(ProjectDefinition project:projects){
+			for(String dependency:project.getProjectDependencies()){
+				if(nodes.containsKey(dependency)){
+					edgeCount++;
+				}
+			}
+			for(String packageName:project.getImportedPackages()){
+				edgeCount += Math.min(1, packageExportIndex.getExporters(packageName).size());
+			}
+		}
+
+		edgeOffsets = new int[nodeCount + 1];
+		int[] targets = new int[edgeCount];
+		optionalEdges = new BitSet(edgeCount);
+		int[] lastSource = new int[nodeCount];
+		int[] lastEdge = new int[nodeCount];
+		Arrays.fill(lastSource, -1);
+		int edge = 0;
+		for(int node=0;node<nodeCount;node++){
+			edgeOffsets[node] = edge;
+			ProjectDefinition project = projects[node];
+			List<String> dependencies = project.getProjectDependencies();
+			for(int i=0;i<dependencies.size();i++){
+				Integer target = nodes.get(dependencies.get(i));
+
+				// Skip unknown dependencies.
+				if(target != null){
+					edge = addEdge(node, target, project.isOptionalDependency(i), edge, targets, lastSource, lastEdge);
+				}
+			}
+			List<String> importedPackages = project.getImportedPackages();
+			for(int i=0;i<importedPackages.size();i++){
+				int target = resolveExporter(node, importedPackages.get(i), lastSource);
+				if(target >= 0 && target != node){
+					edge = addEdge(node, target, project.isOptionalImportedPackage(i), edge, targets, lastSource, lastEdge);
+				}
+			}
+		}
+		edgeOffsets[nodeCount] = edge;
+		edgeTargets = edge == edgeCount ? targets : Arrays.copyOf(targets, edge);
+
+		testProjects = new int[nodeCount];
+		for(int node=0;node<nodeCount;node++){
+			testProjects[node] = getNode(projects[node].getProjectId() + TEST_PROJECT_SUFFIX);
+		}
+	}
+
+	/**
+	 * Choose the one loaded project an imported package is taken from. The project itself is chosen if it exports
+	 * the package, then a project the node already depends on, e.g. through <code>Require-Bundle</code>, and otherwise
+	 * the exporter with the lowest project id, so the choice does not depend on the scan order.
+	 * @param node Importing node.
+	 * @param packageName Imported package.
+	 * @param lastSource Last source node of an edge to every target, to find the existing dependencies of the node.
+	 * @return Node of the chosen exporter, or -1 if no loaded project exports the package.
+	 */
+	private int resolveExporter(int node, String packageName, int[] lastSource) {
+		int chosen = -1;
+		for(String exporter:packageExportIndex.getExporters(packageName)){
+			Integer target = nodes.get(exporter);
+			if(target == null){
+				continue;
+			}
+			if(target == node || lastSource[target] == node){
+				return target;
+			}
+			if(chosen < 0 || exporter.compareTo(projects[chosen].getProjectId()) < 0){
+				chosen = target;
+			}
+		}
+		return chosen;
+	}
+
+	/**
+	 * Add an edge, unless the node already has one to the target. A repeated dependency makes the existing edge
+	 * required if either of them is required.
+	 * @param node Source node.
+	 * @param target Target node.
+	 * @param optional True if the dependency is optional.
+	 * @param edge Index of the next edge.
+	 * @param targets Edge targets being filled.
+	 * @param lastSource Last source node of an edge to every target.
+	 * @param lastEdge Last edge to every target.
+	 * @return Index of the next edge.
+	 */
+	private int addEdge(int node, int target, boolean optional, int edge, int[] targets, int[] lastSource, int[] lastEdge) {
+		if(lastSource[target] == node){
+			if(!optional){
+				optionalEdges.clear(lastEdge[target]);
+			}
+			return edge;
+		}
+		lastSource[target] = node;
+		lastEdge[target] = edge;
+		targets[edge] = target;
+		if(optional){
+			optionalEdges.set(edge);
+		}
+		return edge + 1;
+	}
+
+	/**
+	 * Return the number of projects in the graph.
+	 * @return Number of nodes.
+	 */
+	public int size() {
+		return projects.length;
+	}
+
+	/**
+	 * Return the node of a project.
+	 * @param projectId Id of the project.
+	 * @return Node of the project or -1, if the project is not in the graph.
+	 */
+	public int getNode(String projectId) {
+		Integer node = nodes.get(projectId);
+		return node == null ? -1 : node;
+	}
+
+	/**
+	 * Return the project of a node.
+	 * @param node Node in the graph.
+	 * @return ProjectDefinition of the node.
+	 */
+	public ProjectDefinition getProject(int node) {
+		return projects[node];
+	}
+
+	/**
+	 * Return the index of the first dependency edge of a node.
+	 * @param node Node in the graph.
+	 * @return First edge index.
+	 */
+	public int getEdgeStart(int node) {
+		return edgeOffsets[node];
+	}
+
+	/**
+	 * Return the index after the last dependency edge of a node.
+	 * @param node Node in the graph.
+	 * @return Edge end index (exclusive).
+	 */
+	public int getEdgeEnd(int node) {
+		return edgeOffsets[node + 1];
+	}
+
+	/**
+	 * Return the dependency an edge points to.
+	 * @param edge Edge index.
+	 * @return Node of the dependency.
+	 */
+	public int getEdgeTarget(int edge) {
+		return edgeTargets[edge];
+	}
+
+	/**
+	 * Check if an edge is an optional dependency, <code>resolution:=optional</code> in the manifest.
+	 * @param edge Edge index.
+	 * @return True if the edge is optional.
+	 */
+	public boolean isOptionalEdge(int edge) {
+		return optionalEdges.get(edge);
+	}
+
+	/**
+	 * Return the total number of dependency edges.
+	 * @return Number of edges.
+	 */
+	public int getEdgeCount() {
+		return edgeTargets.length;
+	}
+
+	/**
+	 * Return the index the imported packages were resolved with.
+	 * @return Package exporters.
+	 */
+	public PackageExportIndex getPackageExportIndex() {
+		return packageExportIndex;
+	}
+
+	/**
+	 * Return the test project of a node, the project with the <code>.test</code> suffix.
+	 * @param node Node in the graph.
+	 * @return Node of the test project or -1, if there is none.
+	 */
+	public int getTestProject(int node) {
+		return testProjects[node];
+	}
+}
@@ -0,0 +1,68 @@
+package org.csstudio.util.importwizard.project;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <code>PackageExportIndex</code>
+ * maps the package names to the projects exporting them, so the <code>Import-Package</code> dependencies of a plug-in
+ * can be resolved to the projects providing the packages.</br>
+ * A package exported by only one project, which is the common case, is stored as a singleton list.
+ *
+ */
+public class PackageExportIndex {
+	private final Map<String, List<String>> exporters;
+
+	/**
+	 * Build the index of the packages exported by the projects.
+	 * @param projectDefinitions Projects to index.
+	 */
+	public PackageExportIndex(Collection<ProjectDefinition> projectDefinitions) {
+		exporters = new HashMap<String, List<String>>(projectDefinitions.size() * 4);
+		for(ProjectDefinition projectDefinition:projectDefinitions){
+			for(String packageName:projectDefinition.getExportedPackages()){
+				addExporter(packageName, projectDefinition.getProjectId());
+			}
+		}
+	}
+
+	/**
+	 * Add an exporter of a package.
+	 * @param packageName Name of the exported package.
+	 * @param projectId Id of the exporting project.
+	 */
+	private void addExporter(String packageName, String projectId) {
+		List<String> projectIds = exporters.get(packageName);
+		if(projectIds == null){
+			exporters.put(packageName, Collections.singletonList(projectId));
+		}else if(!projectIds.contains(projectId)){
+			if(projectIds.size() == 1){
+				projectIds = new ArrayList<String>(projectIds);
+				exporters.put(packageName, projectIds);
+			}
+			projectIds.add(projectId);
+		}
+	}
+
+	/**
+	 * Return the projects exporting a package.
+	 * @param packageName Name of the package.
+	 * @return Unmodifiable list of the exporting projectIds in the order the projects were indexed, empty if no project exports it.
+	 */
+	public List<String> getExporters(String packageName) {
+		List<String> projectIds = exporters.get(packageName);
+		return projectIds == null ? Collections.<String>emptyList() : Collections.unmodifiableList(projectIds);
+	}
+
+	/**
+	 * Return the number of indexed packages.
+	 * @return Number of distinct exported packages.
+	 */
+	public int size() {
+		return exporters.size();
+	}
+}
@@ -1,11 +1,15 @@
 package org.csstudio.util.importwizard.project;
 
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * <code>ProjectDefinition</code>
  * is the representation of a plug-in or feature with its dependencies.</br> 
- * It contains the projectId, projectPath and a list of dependencies.
+ * It contains the projectId, projectPath, a list of dependencies and the packages a plug-in exports and imports.
+ * Dependencies and imported packages can be optional (<code>resolution:=optional</code>).
  *
  * @author <a href="mailto:andrej.babic@cosylab.com">Andrej Babi</a>
  *
@@ -14,6 +18,10 @@ public class ProjectDefinition {
 	private final String projectId;
 	private final String projectPath;
 	private final List<String> projectDependencies;
+	private final List<String> exportedPackages;
+	private final List<String> importedPackages;
+	private final BitSet optionalDependencies;
+	private final BitSet optionalImportedPackages;
 
 	/**
 	 * Constructor
@@ -22,6 +30,34 @@ public class ProjectDefinition {
 	 * @param projectDependencies List of projectIds that the project depends on.
 	 */
 	public ProjectDefinition(String projectId, String projectPath,List<String> projectDependencies) {
+		this(projectId, projectPath, projectDependencies, null, null);
+	}
+
+	/**
+	 * Constructor
+	 * @param projectId ID of the plug in/feature
+	 * @param projectPath Full path of the project
+	 * @param projectDependencies List of projectIds that the project depends on.
+	 * @param exportedPackages Names of the packages in the <code>Export-Package</code> header. Can be null.
+	 * @param importedPackages Names of the packages in the <code>Import-Package</code> header. Can be null.
+	 */
+	public ProjectDefinition(String projectId, String projectPath, List<String> projectDependencies,
+			List<String> exportedPackages, List<String> importedPackages) {
+		this(projectId, projectPath, projectDependencies, null, exportedPackages, importedPackages, null);
+	}
+
+	/**
+	 * Constructor
+	 * @param projectId ID of the plug in/feature
+	 * @param projectPath Full path of the project
+	 * @param projectDependencies List of projectIds that the project depends on.
+	 * @param optionalDependencies Indexes of the optional dependencies in <code>projectDependencies</code>. Can be null.
+	 * @param exportedPackages Names of the packages in the <code>Export-Package</code> header. Can be null.
+	 * @param importedPackages Names of the packages in the <code>Import-Package</code> header. Can be null.
+	 * @param optionalImportedPackages Indexes of the optional packages in <code>importedPackages</code>. Can be null.
+	 */
+	public ProjectDefinition(String projectId, String projectPath, List<String> projectDependencies, BitSet optionalDependencies,
+			List<String> exportedPackages, List<String> importedPackages, BitSet optionalImportedPackages) {
 
 		if (projectId == null || projectPath == null) {
 			throw new IllegalArgumentException(
@@ -31,17 +67,76 @@ public class ProjectDefinition {
 
 		this.projectId = projectId;
 		this.projectPath = projectPath;
-		this.projectDependencies = projectDependencies;
+		this.projectDependencies = copyNames(projectDependencies);
+		this.exportedPackages = copyNames(exportedPackages);
+		this.importedPackages = copyNames(importedPackages);
+		this.optionalDependencies = copyFlags(optionalDependencies);
+		this.optionalImportedPackages = copyFlags(optionalImportedPackages);
+	}
+
+	/**
+	 * Copy the flags, so they cannot be changed from outside.
+	 * @param flags Flags, can be null.
+	 * @return Copy of the flags, or an empty bit set.
+	 */
+	private static BitSet copyFlags(BitSet flags) {
+		return flags == null ? new BitSet(0) : (BitSet) flags.clone();
+	}
+
+	/**
+	 * Copy the projectIds or package names into a compact, unmodifiable list.
+	 * @param names List of projectIds or package names, can be null.
+	 * @return Unmodifiable list of the names.
+	 */
+	private static List<String> copyNames(List<String> names) {
+		if(names == null || names.isEmpty()){
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(Arrays.asList(names.toArray(new String[names.size()])));
 	}
 
 	/**
 	 * Get the project dependencies.
-	 * @return List of all the dependencies projectId-s.
+	 * @return Unmodifiable list of all the dependencies projectId-s.
 	 */
 	public List<String> getProjectDependencies() {
 		return projectDependencies;
 	}
 
+	/**
+	 * Check if a dependency is optional.
+	 * @param index Index of the dependency in {@link #getProjectDependencies()}.
+	 * @return True if the dependency has <code>resolution:=optional</code>.
+	 */
+	public boolean isOptionalDependency(int index) {
+		return optionalDependencies.get(index);
+	}
+
+	/**
+	 * Get the packages the plug-in exports.
+	 * @return Unmodifiable list of the exported package names, empty for features.
+	 */
+	public List<String> getExportedPackages() {
+		return exportedPackages;
+	}
+
+	/**
+	 * Get the packages the plug-in imports.
+	 * @return Unmodifiable list of the imported package names, empty for features.
+	 */
+	public List<String> getImportedPackages() {
+		return importedPackages;
+	}
+
+	/**
+	 * Check if an imported package is optional.
+	 * @param index Index of the package in {@link #getImportedPackages()}.
+	 * @return True if the import has <code>resolution:=optional</code>.
+	 */
+	public boolean isOptionalImportedPackage(int index) {
+		return optionalImportedPackages.get(index);
+	}
+
 	/**
 	 * Get the project id.
 	 * @return The string representation of the projectId.
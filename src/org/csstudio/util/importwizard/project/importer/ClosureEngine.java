@@ -0,0 +1,258 @@
+package org.csstudio.util.importwizard.project.importer;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+import org.csstudio.util.importwizard.project.DependencyGraph;
+import org.csstudio.util.importwizard.project.ProjectDefinition;
+import org.csstudio.util.importwizard.project.metrics.FlightRecorderEvents;
+import org.csstudio.util.importwizard.project.metrics.FlightRecorderEvents.Type;
+
+
+/**
+ * <code>ClosureEngine</code>
+ * computes the transitive dependency closure of projects on a {@link org.csstudio.util.importwizard.project.DependencyGraph DependencyGraph}.</br>
+ * The closure is computed iteratively, so deep dependency chains cannot overflow the stack. The closure of every project
+ * is memoized as a bit set, so overlapping selections only pay for the projects that were not computed before.
+ * Projects provided by the target platform can be cut: they are part of a closure only when they are selected,
+ * they and their dependencies are not imported when they are only reached as dependencies. The optional dependencies
+ * are followed as the {@link org.csstudio.util.importwizard.project.importer.OptionalDependencyMode OptionalDependencyMode} tells.
+ * The engine is not thread safe.
+ *
+ */
+public class ClosureEngine {
+	private final DependencyGraph dependencyGraph;
+	private final boolean includeTestProjects;
+	private final BitSet providedNodes;
+	private final OptionalDependencyMode optionalDependencyMode;
+	private final BitSet[] closures;
+	private final BitSet[] selectionClosures;
+	private final int[] stack;
+	private int[] dependencyOrder;
+
+	/**
+	 * Constructor
+	 * @param dependencyGraph Graph to compute the closures on.
+	 * @param includeTestProjects True to include the test projects of every project in the closure.
+	 */
+	public ClosureEngine(DependencyGraph dependencyGraph, boolean includeTestProjects) {
+		this(dependencyGraph, includeTestProjects, null);
+	}
+
+	/**
+	 * Constructor
+	 * @param dependencyGraph Graph to compute the closures on.
+	 * @param includeTestProjects True to include the test projects of every project in the closure.
+	 * @param providedNodes Nodes the target platform provides, see {@link TargetPlatformBundles#getProvidedNodes(DependencyGraph)}.
+	 * Null to cut nothing.
+	 */
+	public ClosureEngine(DependencyGraph dependencyGraph, boolean includeTestProjects, BitSet providedNodes) {
+		this(dependencyGraph, includeTestProjects, providedNodes, OptionalDependencyMode.INCLUDE);
+	}
+
+	/**
+	 * Constructor
+	 * @param dependencyGraph Graph to compute the closures on.
+	 * @param includeTestProjects True to include the test projects of every project in the closure.
+	 * @param providedNodes Nodes the target platform provides, see {@link TargetPlatformBundles#getProvidedNodes(DependencyGraph)}.
+	 * Null to cut nothing.
+	 * @param optionalDependencyMode How the optional dependencies are followed.
+	 */
+	public ClosureEngine(DependencyGraph dependencyGraph, boolean includeTestProjects, BitSet providedNodes,
+			OptionalDependencyMode optionalDependencyMode) {
+		this.dependencyGraph = dependencyGraph;
+		this.includeTestProjects = includeTestProjects;
+		this.providedNodes = providedNodes == null ? new BitSet() : providedNodes;
+		this.optionalDependencyMode = optionalDependencyMode;
+		this.closures = new BitSet[dependencyGraph.size()];
+		this.selectionClosures = optionalDependencyMode == OptionalDependencyMode.ONE_LEVEL ? new BitSet[dependencyGraph.size()] : null;
+		this.stack = new int[dependencyGraph.size()];
+	}
+
+	/**
+	 * Return the graph of the engine.
+	 * @return Dependency graph.
+	 */
+	public DependencyGraph getDependencyGraph() {
+		return dependencyGraph;
+	}
+
+	/**
+	 * Check if the test projects are part of the closures.
+	 * @return True if the test projects are included.
+	 */
+	public boolean isIncludeTestProjects() {
+		return includeTestProjects;
+	}
+
+	/**
+	 * Return how the optional dependencies are followed.
+	 * @return Optional dependency mode.
+	 */
+	public OptionalDependencyMode getOptionalDependencyMode() {
+		return optionalDependencyMode;
+	}
+
+	/**
+	 * Return the closure of a single selected project: the project, its dependencies and, if included, the test projects.
+	 * @param node Graph node of the project.
+	 * @return Memoized closure. Must not be modified.
+	 */
+	public BitSet getClosure(int node) {
+		if(selectionClosures == null){
+			return getDependencyClosure(node);
+		}
+
+		// One level: the optional dependencies of the selected project, with their own closures without optional dependencies.
+		BitSet closure = selectionClosures[node];
+		if(closure != null){
+			return closure;
+		}
+		closure = getDependencyClosure(node);
+		for(int edge=dependencyGraph.getEdgeStart(node);edge<dependencyGraph.getEdgeEnd(node);edge++){
+			int target = dependencyGraph.getEdgeTarget(edge);
+			if(dependencyGraph.isOptionalEdge(edge) && !providedNodes.get(target) && !closure.get(target)){
+				if(closure == closures[node]){
+					closure = (BitSet) closure.clone();
+				}
+				closure.or(getDependencyClosure(target));
+			}
+		}
+		selectionClosures[node] = closure;
+		return closure;
+	}
+
+	/**
+	 * Return the closure of a project reached as a dependency. Optional dependencies are followed only in the
+	 * {@link OptionalDependencyMode#INCLUDE INCLUDE} mode.
+	 * @param node Graph node of the project.
+	 * @return Memoized closure. Must not be modified.
+	 */
+	private BitSet getDependencyClosure(int node) {
+		boolean followOptional = optionalDependencyMode == OptionalDependencyMode.INCLUDE;
+		BitSet closure = closures[node];
+		if(closure != null){
+			return closure;
+		}
+
+		Object event = FlightRecorderEvents.begin(Type.CLOSURE);
+		closure = new BitSet(dependencyGraph.size());
+		closure.set(node);
+		int stackSize = 0;
+		stack[stackSize++] = node;
+		while(stackSize > 0){
+			int current = stack[--stackSize];
+			for(int edge=dependencyGraph.getEdgeStart(current);edge<dependencyGraph.getEdgeEnd(current);edge++){
+				if(followOptional || !dependencyGraph.isOptionalEdge(edge)){
+					stackSize = visit(dependencyGraph.getEdgeTarget(edge), closure, stackSize);
+				}
+			}
+			if(includeTestProjects){
+				stackSize = visit(dependencyGraph.getTestProject(current), closure, stackSize);
+			}
+		}
+		closures[node] = closure;
+		FlightRecorderEvents.commitClosure(event, dependencyGraph.getProject(node).getProjectId(), 1, closure);
+		return closure;
+	}
+
+	/**
+	 * Add a node to the closure being computed. An already memoized closure is merged instead of being walked again.
+	 * Nodes provided by the target platform are skipped.
+	 * @param node Node reached from the closure, -1 for none.
+	 * @param closure Closure being computed.
+	 * @param stackSize Current stack size.
+	 * @return New stack size.
+	 */
+	private int visit(int node, BitSet closure, int stackSize) {
+		if(node < 0 || closure.get(node) || providedNodes.get(node)){
+			return stackSize;
+		}
+		if(closures[node] != null){
+			closure.or(closures[node]);
+			return stackSize;
+		}
+		closure.set(node);
+		stack[stackSize] = node;
+		return stackSize + 1;
+	}
+
+	/**
+	 * Return the closure of the projects.
+	 * @param projects Projects to compute the closure of. Projects that are not in the graph are ignored.
+	 * @return New bit set of the graph nodes in the closure.
+	 */
+	public BitSet computeClosure(Collection<ProjectDefinition> projects) {
+		Object event = FlightRecorderEvents.begin(Type.CLOSURE);
+		BitSet closure = new BitSet(dependencyGraph.size());
+		for(ProjectDefinition project:projects){
+			int node = dependencyGraph.getNode(project.getProjectId());
+			if(node >= 0){
+				closure.or(getClosure(node));
+			}
+		}
+		FlightRecorderEvents.commitClosure(event, null, projects.size(), closure);
+		return closure;
+	}
+
+	/**
+	 * Create the import plan of the projects.
+	 * @param projectsToImport Projects the user selected for import.
+	 * @return Plan with the projects, their dependencies and the test projects if included, in dependency order.
+	 */
+	public ImportPlan createImportPlan(Collection<ProjectDefinition> projectsToImport) {
+		BitSet closure = computeClosure(projectsToImport);
+		int[] order = getDependencyOrder();
+		int[] nodes = new int[closure.cardinality()];
+		int size = 0;
+		for(int node:order){
+			if(closure.get(node)){
+				nodes[size++] = node;
+			}
+		}
+		return new ImportPlan(dependencyGraph, nodes);
+	}
+
+	/**
+	 * Return all the nodes of the graph, every dependency before the projects depending on it.
+	 * The order is a post-order of an iterative depth first search, computed once per engine.
+	 * @return Nodes in dependency order.
+	 */
+	private int[] getDependencyOrder() {
+		if(dependencyOrder != null){
+			return dependencyOrder;
+		}
+
+		int nodeCount = dependencyGraph.size();
+		int[] order = new int[nodeCount];
+		int orderSize = 0;
+		boolean[] visited = new boolean[nodeCount];
+		int[] nextEdge = new int[nodeCount];
+		for(int root=0;root<nodeCount;root++){
+			if(visited[root]){
+				continue;
+			}
+			visited[root] = true;
+			int stackSize = 0;
+			stack[stackSize++] = root;
+			nextEdge[root] = dependencyGraph.getEdgeStart(root);
+			while(stackSize > 0){
+				int current = stack[stackSize - 1];
+				if(nextEdge[current] < dependencyGraph.getEdgeEnd(current)){
+					int target = dependencyGraph.getEdgeTarget(nextEdge[current]++);
+					if(!visited[target]){
+						visited[target] = true;
+						nextEdge[target] = dependencyGraph.getEdgeStart(target);
+						stack[stackSize++] = target;
+					}
+				}else{
+					// All the dependencies are ordered, the project can follow.
+					order[orderSize++] = current;
+					stackSize--;
+				}
+			}
+		}
+		dependencyOrder = order;
+		return order;
+	}
+}
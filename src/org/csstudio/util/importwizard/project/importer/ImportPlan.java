@@ -0,0 +1,74 @@
+package org.csstudio.util.importwizard.project.importer;
+
+import java.util.AbstractList;
+import java.util.List;
+
+import org.csstudio.util.importwizard.project.DependencyGraph;
+import org.csstudio.util.importwizard.project.ProjectDefinition;
+
+
+/**
+ * <code>ImportPlan</code>
+ * is the immutable set of projects to import: the selected projects, their dependencies and, if requested, their test projects.</br>
+ * The projects are ordered so that dependencies come before the projects depending on them (projects in a dependency
+ * cycle are in no particular order). The plan is computed once by the {@link org.csstudio.util.importwizard.project.importer.ClosureEngine ClosureEngine}
+ * and used both for the progress count and the import.
+ *
+ */
+public final class ImportPlan {
+	private final DependencyGraph dependencyGraph;
+	private final int[] nodes;
+
+	/**
+	 * Constructor
+	 * @param dependencyGraph Graph the nodes belong to.
+	 * @param nodes Nodes to import in dependency order. The array is not copied.
+	 */
+	ImportPlan(DependencyGraph dependencyGraph, int[] nodes) {
+		this.dependencyGraph = dependencyGraph;
+		this.nodes = nodes;
+	}
+
+	/**
+	 * Return the number of projects to import.
+	 * @return Number of projects in the plan.
+	 */
+	public int size() {
+		return nodes.length;
+	}
+
+	/**
+	 * Return the graph node of a project in the plan.
+	 * @param index Position in the plan.
+	 * @return Graph node of the project.
+	 */
+	public int getNode(int index) {
+		return nodes[index];
+	}
+
+	/**
+	 * Return the dependency graph the plan was computed on.
+	 * @return Dependency graph.
+	 */
+	public DependencyGraph getDependencyGraph() {
+		return dependencyGraph;
+	}
+
+	/**
+	 * Return the projects to import in dependency order.
+	 * @return Unmodifiable list of the projects.
+	 */
+	public List<ProjectDefinition> getProjects() {
+		return new AbstractList<ProjectDefinition>() {
+			@Override
+			public ProjectDefinition get(int index) {
+				return dependencyGraph.getProject(nodes[index]);
+			}
+
+			@Override
+			public int size() {
+				return nodes.length;
+			}
+		};
+	}
+}
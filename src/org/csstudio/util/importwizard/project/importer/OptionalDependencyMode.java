@@ -0,0 +1,35 @@
+package org.csstudio.util.importwizard.project.importer;
+
+
+/**
+ * <code>OptionalDependencyMode</code>
+ * tells how a {@link org.csstudio.util.importwizard.project.importer.ClosureEngine ClosureEngine} follows the optional
+ * dependencies, <code>resolution:=optional</code> in the manifest.
+ *
+ */
+public enum OptionalDependencyMode {
+	/** Optional dependencies are imported like the required ones. */
+	INCLUDE("Include optional dependencies"),
+	/** Optional dependencies are not imported. */
+	EXCLUDE("Exclude optional dependencies"),
+	/** Only the optional dependencies of the selected projects are imported, with their required dependencies. */
+	ONE_LEVEL("Optional dependencies of the selected projects only");
+
+	private final String label;
+
+	/**
+	 * Constructor
+	 * @param label Description of the mode shown to the user.
+	 */
+	private OptionalDependencyMode(String label) {
+		this.label = label;
+	}
+
+	/**
+	 * Return the description of the mode shown to the user.
+	 * @return Label of the mode.
+	 */
+	public String getLabel() {
+		return label;
+	}
+}
@@ -0,0 +1,274 @@
+package org.csstudio.util.importwizard.project.importer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import org.csstudio.util.importwizard.project.DependencyGraph;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResourceRuleFactory;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.eclipse.core.runtime.jobs.MultiRule;
+
+
+/**
+ * <code>ParallelProjectOpener</code>
+ * opens the created projects of an {@link org.csstudio.util.importwizard.project.importer.ImportPlan ImportPlan} with a bounded number of Eclipse jobs.</br>
+ * Creating a project needs the workspace root rule, so the projects are created beforehand in plan order. Opening needs only
+ * the rule of the project itself, which lets the jobs run in parallel. The projects are grouped in strongly connected
+ * components, so a dependency cycle is opened by a single job, and a component is opened only after all the components
+ * it depends on. The opener must not be used while the calling thread holds a scheduling rule.
+ *
+ */
+class ParallelProjectOpener {
+	private final ImportPlan importPlan;
+	private final IProject[] projects;
+	private final int parallelism;
+	private final ProjectImporter projectImporter;
+
+	private int[] positions;
+	private int[] componentOfPosition;
+	private int[][] components;
+	private int[][] dependentComponents;
+	private int[] pendingDependencies;
+
+	private final Deque<Integer> readyComponents = new ArrayDeque<Integer>();
+	private int runningJobs = 0;
+	private int remainingComponents = 0;
+
+	/**
+	 * Constructor
+	 * @param importPlan Plan of the projects.
+	 * @param projects Created projects, indexed by the position in the plan. Null for the projects that failed to be created.
+	 * @param parallelism Maximum number of jobs opening projects at the same time.
+	 * @param projectImporter Importer opening the projects and notifying the progress.
+	 */
+	ParallelProjectOpener(ImportPlan importPlan, IProject[] projects, int parallelism, ProjectImporter projectImporter) {
+		this.importPlan = importPlan;
+		this.projects = projects;
+		this.parallelism = Math.max(1, parallelism);
+		this.projectImporter = projectImporter;
+	}
+
+	/**
+	 * Open all the projects and wait until the jobs are done.
+	 * @throws InterruptedException If the thread was interrupted while waiting. The scheduled jobs still finish.
+	 */
+	void openProjects() throws InterruptedException {
+		computeComponents();
+		computeComponentDependencies();
+
+		synchronized (this) {
+			remainingComponents = components.length;
+			for(int component=0;component<components.length;component++){
+				if(pendingDependencies[component] == 0){
+					readyComponents.add(component);
+				}
+			}
+			scheduleReadyComponents();
+			while(remainingComponents > 0){
+				wait();
+			}
+		}
+	}
+
+	/**
+	 * Return the plan position of a dependency edge target.
+	 * @param edge Edge in the dependency graph.
+	 * @return Plan position of the dependency or -1 if it is not imported.
+	 */
+	private int getTargetPosition(int edge) {
+		return positions[importPlan.getDependencyGraph().getEdgeTarget(edge)];
+	}
+
+	/**
+	 * Group the plan in strongly connected components with an iterative Tarjan's algorithm.
+	 * The components are found dependencies first.
+	 */
+	private void computeComponents() {
+		DependencyGraph graph = importPlan.getDependencyGraph();
+		int size = importPlan.size();
+		positions = new int[graph.size()];
+		Arrays.fill(positions, -1);
+		for(int position=0;position<size;position++){
+			positions[importPlan.getNode(position)] = position;
+		}
+
+		int[] index = new int[size];
+		int[] lowLink = new int[size];
+		int[] nextEdge = new int[size];
+		boolean[] onStack = new boolean[size];
+		int[] componentStack = new int[size];
+		int[] callStack = new int[size];
+		Arrays.fill(index, -1);
+		componentOfPosition = new int[size];
+		List<int[]> foundComponents = new ArrayList<int[]>();
+		int counter = 0;
+		int componentStackSize = 0;
+
+		for(int root=0;root<size;root++){
+			if(index[root] >= 0){
+				continue;
+			}
+			int callStackSize = 0;
+			index[root] = lowLink[root] = counter++;
+			nextEdge[root] = graph.getEdgeStart(importPlan.getNode(root));
+			componentStack[componentStackSize++] = root;
+			onStack[root] = true;
+			callStack[callStackSize++] = root;
+
+			while(callStackSize > 0){
+				int current = callStack[callStackSize - 1];
+				if(nextEdge[current] < graph.getEdgeEnd(importPlan.getNode(current))){
+					int target = getTargetPosition(nextEdge[current]++);
+					if(target < 0){
+						continue;
+					}
+					if(index[target] < 0){
+						index[target] = lowLink[target] = counter++;
+						nextEdge[target] = graph.getEdgeStart(importPlan.getNode(target));
+						componentStack[componentStackSize++] = target;
+						onStack[target] = true;
+						callStack[callStackSize++] = target;
+					}else if(onStack[target]){
+						lowLink[current] = Math.min(lowLink[current], index[target]);
+					}
+					continue;
+				}
+
+				// All the dependencies visited.
+				callStackSize--;
+				if(callStackSize > 0){
+					int caller = callStack[callStackSize - 1];
+					lowLink[caller] = Math.min(lowLink[caller], lowLink[current]);
+				}
+				if(lowLink[current] == index[current]){
+					int start = componentStackSize;
+					do {
+						start--;
+						onStack[componentStack[start]] = false;
+					} while(componentStack[start] != current);
+					int[] component = Arrays.copyOfRange(componentStack, start, componentStackSize);
+					componentStackSize = start;
+					for(int position:component){
+						componentOfPosition[position] = foundComponents.size();
+					}
+					foundComponents.add(component);
+				}
+			}
+		}
+		components = foundComponents.toArray(new int[foundComponents.size()][]);
+	}
+
+	/**
+	 * Count for every component the components it depends on and collect the components depending on it.
+	 */
+	private void computeComponentDependencies() {
+		DependencyGraph graph = importPlan.getDependencyGraph();
+		pendingDependencies = new int[components.length];
+		List<List<Integer>> dependents = new ArrayList<List<Integer>>(components.length);
+		for(int component=0;component<components.length;component++){
+			dependents.add(new ArrayList<Integer>());
+		}
+		int[] lastDependent = new int[components.length];
+		Arrays.fill(lastDependent, -1);
+
+		for(int component=0;component<components.length;component++){
+			for(int position:components[component]){
+				int node = importPlan.getNode(position);
+				for(int edge=graph.getEdgeStart(node);edge<graph.getEdgeEnd(node);edge++){
+					int target = getTargetPosition(edge);
+					if(target < 0){
+						continue;
+					}
+					int dependency = componentOfPosition[target];
+					if(dependency != component && lastDependent[dependency] != component){
+						lastDependent[dependency] = component;
+						pendingDependencies[component]++;
+						dependents.get(dependency).add(component);
+					}
+				}
+			}
+		}
+
+		dependentComponents = new int[components.length][];
+		for(int component=0;component<components.length;component++){
+			List<Integer> componentDependents = dependents.get(component);
+			dependentComponents[component] = new int[componentDependents.size()];
+			for(int i=0;i<componentDependents.size();i++){
+				dependentComponents[component][i] = componentDependents.get(i);
+			}
+		}
+	}
+
+	/**
+	 * Schedule the ready components while there are free job slots.
+	 */
+	private synchronized void scheduleReadyComponents() {
+		while(runningJobs < parallelism && !readyComponents.isEmpty()){
+			runningJobs++;
+			createOpenJob(readyComponents.poll()).schedule();
+		}
+	}
+
+	/**
+	 * Release the components waiting on the opened component and schedule the next jobs.
+	 * @param component Component whose job is done.
+	 */
+	private synchronized void componentOpened(int component) {
+		runningJobs--;
+		remainingComponents--;
+		for(int dependent:dependentComponents[component]){
+			if(--pendingDependencies[dependent] == 0){
+				readyComponents.add(dependent);
+			}
+		}
+		scheduleReadyComponents();
+		notifyAll();
+	}
+
+	/**
+	 * Create the job opening the projects of a component. The job holds only the rules of its own projects.
+	 * @param component Component to open.
+	 * @return Job opening the component.
+	 */
+	private Job createOpenJob(final int component) {
+		IResourceRuleFactory ruleFactory = ResourcesPlugin.getWorkspace().getRuleFactory();
+		ISchedulingRule rule = null;
+		for(int position:components[component]){
+			if(projects[position] != null){
+				rule = MultiRule.combine(rule, ruleFactory.modifyRule(projects[position]));
+			}
+		}
+
+		Job job = new Job("Opening " + importPlan.getProjects().get(components[component][0]).getProjectId()) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				for(int position:components[component]){
+					if(projects[position] != null){
+						projectImporter.openProject(importPlan.getProjects().get(position), projects[position]);
+					}
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		job.setRule(rule);
+		job.setSystem(true);
+		job.addJobChangeListener(new JobChangeAdapter() {
+			@Override
+			public void done(IJobChangeEvent event) {
+				componentOpened(component);
+			}
+		});
+		return job;
+	}
+}
@@ -0,0 +1,40 @@
+package org.csstudio.util.importwizard.project.importer;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.pde.core.plugin.IPluginBase;
+import org.eclipse.pde.core.plugin.IPluginModelBase;
+import org.eclipse.pde.core.plugin.PluginRegistry;
+
+
+/**
+ * <code>PdeTargetPlatformReader</code>
+ * reads the bundles of the active PDE target platform.</br>
+ * PDE is an optional dependency of the plug-in, so this is the only class referring to it. Loading it throws a
+ * {@link NoClassDefFoundError} when PDE is not installed.
+ *
+ */
+final class PdeTargetPlatformReader {
+
+	private PdeTargetPlatformReader() {
+	}
+
+	/**
+	 * Read the ids of the enabled bundles of the target platform. Workspace projects are not part of it.
+	 * @return Bundle ids.
+	 */
+	static Set<String> readBundleIds() {
+		Set<String> bundleIds = new HashSet<String>();
+		IPluginModelBase[] models = PluginRegistry.getExternalModels();
+		if(models != null){
+			for(IPluginModelBase model:models){
+				IPluginBase pluginBase = model.getPluginBase();
+				if(model.isEnabled() && pluginBase != null && pluginBase.getId() != null){
+					bundleIds.add(pluginBase.getId());
+				}
+			}
+		}
+		return bundleIds;
+	}
+}
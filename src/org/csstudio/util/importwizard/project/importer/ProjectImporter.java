@@ -1,16 +1,34 @@
 package org.csstudio.util.importwizard.project.importer;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
+import org.csstudio.util.importwizard.project.DependencyGraph;
 import org.csstudio.util.importwizard.project.ProjectDefinition;
+import org.csstudio.util.importwizard.project.metrics.FlightRecorderEvents;
+import org.csstudio.util.importwizard.project.metrics.FlightRecorderEvents.Type;
+import org.csstudio.util.importwizard.project.metrics.IMetricsListener;
+import org.csstudio.util.importwizard.project.metrics.IMetricsListener.Phase;
+import org.eclipse.core.resources.IBuildConfiguration;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IResourceRuleFactory;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceDescription;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.MultiRule;
+import org.osgi.framework.FrameworkUtil;
 
 
 /**
@@ -22,18 +40,32 @@ import org.eclipse.core.runtime.Path;
  */
 public class ProjectImporter {
 	
-	private static final String TEST_PROJECT_SUFFIX = ".test";
-	
-	private Map<String, ProjectDefinition> projectDefinitions;
+	private final DependencyGraph dependencyGraph;
 	private boolean importTestProjects = false;
+	private boolean batchImport = false;
+	private int importParallelism = 1;
+	private boolean suspendAutoBuild = false;
+	private TargetPlatformBundles targetPlatformBundles;
+	private OptionalDependencyMode optionalDependencyMode = OptionalDependencyMode.INCLUDE;
 	private IImportMonitor progressMonitor;
+	private IMetricsListener metricsListener;
+	private MultiStatus importStatus;
+	private IProgressMonitor cancelMonitor;
 	
 	/**
 	 * Project importer constructor.
 	 * @param projectDefinitions Projects in Map<String(projectId), ProjectDefinition> format.
 	 */
 	public ProjectImporter(Map<String, ProjectDefinition> projectDefinitions){
-		this.projectDefinitions = projectDefinitions;
+		this(new DependencyGraph(projectDefinitions.values()));
+	}
+	
+	/**
+	 * Project importer constructor.
+	 * @param dependencyGraph Dependency graph of the projects.
+	 */
+	public ProjectImporter(DependencyGraph dependencyGraph){
+		this.dependencyGraph = dependencyGraph;
 	}
 	
 	/**
@@ -45,66 +77,281 @@ public class ProjectImporter {
 	}
 	
 	/**
-	 * Build a set off all the projectIds that need to be imported.
-	 * @param projectId of the project you want to import.
-	 * @param alreadyCountedProjectIds Set of already added projects.
+	 * Import the whole plan in a single workspace operation. Resource change listeners and the builders
+	 * then see one consolidated delta at the end, instead of one per project.
+	 * @param batchImport True to import in a single workspace operation.
 	 */
-	private void recursiveBuildProjectsDependencySet(String projectId, Set<String> alreadyCountedProjectIds){
-		ProjectDefinition project = projectDefinitions.get(projectId);
-		
-		// Project does not exist in the path.
-		if(project == null){
-			return;
+	public void setBatchImport(boolean batchImport) {
+		this.batchImport = batchImport;
+	}
+	
+	/**
+	 * Open the projects with parallel jobs. The projects are still created one by one in dependency order,
+	 * as creating a project needs the workspace root rule, and then opened by up to <code>importParallelism</code> jobs,
+	 * each holding only the rule of its own projects. Dependencies are opened before the projects depending on them.
+	 * @param importParallelism Maximum number of parallel jobs. 1 or less imports sequentially.
+	 */
+	public void setImportParallelism(int importParallelism) {
+		this.importParallelism = importParallelism;
+	}
+	
+	/**
+	 * Turn the workspace autobuild off while the plan is imported. When the import is done the imported projects are
+	 * built once, in dependency order, and the autobuild setting of the user is restored.
+	 * @param suspendAutoBuild True to suspend the autobuild during the import.
+	 */
+	public void setSuspendAutoBuild(boolean suspendAutoBuild) {
+		this.suspendAutoBuild = suspendAutoBuild;
+	}
+	
+	/**
+	 * Cut the dependencies the target platform provides from the plan. Projects that are requested explicitly are
+	 * imported even if the target platform provides them.
+	 * @param targetPlatformBundles Bundles of the target platform, null to import all the dependencies.
+	 */
+	public void setTargetPlatformBundles(TargetPlatformBundles targetPlatformBundles) {
+		this.targetPlatformBundles = targetPlatformBundles;
+	}
+	
+	/**
+	 * Set how the optional dependencies are imported.
+	 * @param optionalDependencyMode Optional dependency mode, {@link OptionalDependencyMode#INCLUDE INCLUDE} by default.
+	 */
+	public void setOptionalDependencyMode(OptionalDependencyMode optionalDependencyMode) {
+		this.optionalDependencyMode = optionalDependencyMode;
+	}
+	
+	/**
+	 * Create the plan of the projects to import. The plan can be used for the progress count and the import.
+	 * @param projectsToImport List of projects you want to import.
+	 * @return Plan with the specified projects, their dependencies and their test projects if so specified,
+	 * without the dependencies the target platform provides if it is set and with the optional dependencies as set.
+	 */
+	public ImportPlan createImportPlan(List<ProjectDefinition> projectsToImport) {
+		long startTime = startPhase();
+		BitSet providedNodes = targetPlatformBundles == null ? null : targetPlatformBundles.getProvidedNodes(dependencyGraph);
+		ImportPlan importPlan = new ClosureEngine(dependencyGraph, importTestProjects, providedNodes, optionalDependencyMode)
+				.createImportPlan(projectsToImport);
+		phaseCompleted(Phase.CLOSURE, projectsToImport.size() + " selected projects", startTime);
+		return importPlan;
+	}
+	
+	/**
+	 * Returns the total number of projects to import.
+	 * @param projectsToImport List of projects you want to import.
+	 * @return The total number of project that need to be imported (specified projects + their dependencies)
+	 */
+	public int getNumberOfProjectsToImport(List<ProjectDefinition> projectsToImport){
+		return createImportPlan(projectsToImport).size();
+	}
+	
+	/**
+	 * Import the provided projects with their dependencies.
+	 * @param projectsToImport List of projectIds to import.
+	 * @return Result of the import, see {@link #importPlan(ImportPlan)}.
+	 */
+	public IStatus importProjectsWithDependencies(List<ProjectDefinition> projectsToImport) {
+		return importPlan(createImportPlan(projectsToImport));
+	}
+	
+	/**
+	 * Import the projects of the plan, dependencies first. A project that fails does not stop the import of the others.
+	 * @param importPlan Plan created by {@link #createImportPlan(List)} or a {@link ClosureEngine}.
+	 * @return OK status, or a multi status with an error for every project that could not be created or opened
+	 * and for every failed workspace operation.
+	 */
+	public IStatus importPlan(ImportPlan importPlan) {
+		return importPlan(importPlan, null);
+	}
+	
+	/**
+	 * Import the projects of the plan, dependencies first. A project that fails does not stop the import of the others.
+	 * When the import is canceled, the projects that were not created or opened yet are left out, the imported ones
+	 * are still built if the autobuild was suspended, and the autobuild setting is restored.
+	 * @param importPlan Plan created by {@link #createImportPlan(List)} or a {@link ClosureEngine}.
+	 * @param monitor Monitor the import is canceled with. Can be null.
+	 * @return OK status, or a multi status with an error for every project that could not be created or opened
+	 * and for every failed workspace operation, a warning if the autobuild could not be suspended and a cancel
+	 * status if the import was canceled.
+	 */
+	public IStatus importPlan(final ImportPlan importPlan, IProgressMonitor monitor) {
+		importStatus = new MultiStatus(FrameworkUtil.getBundle(getClass()).getSymbolicName(), IStatus.OK,
+				"Import of " + importPlan.size() + " projects failed.", null);
+		cancelMonitor = monitor;
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+		boolean restoreAutoBuild = false;
+		if(suspendAutoBuild && workspace.isAutoBuilding()){
+			try {
+				setAutoBuilding(workspace, false);
+				restoreAutoBuild = true;
+			} catch (CoreException e) {
+				// The projects are imported with the autobuild on.
+				addImportStatus(IStatus.WARNING, "The autobuild could not be suspended, the projects are built while they are imported.", e);
+			}
 		}
 		
-		// Project and its dependencies already counted.
-		if(!alreadyCountedProjectIds.add(projectId)){
-			return;
+		try {
+			if(importParallelism > 1){
+				importPlanInParallel(importPlan);
+			}else{
+				runImportOperation(importPlan, new IWorkspaceRunnable() {
+					@Override
+					public void run(IProgressMonitor monitor) throws CoreException {
+						importProjects(importPlan);
+					}
+				});
+			}
+			
+			// The autobuild would have built the projects, do it once for the whole plan.
+			if(restoreAutoBuild){
+				try {
+					buildProjects(importPlan);
+				} catch (CoreException e) {
+					importFailed("Building the imported projects failed.", e);
+				}
+			}
+		} finally {
+			if(restoreAutoBuild){
+				try {
+					setAutoBuilding(workspace, true);
+				} catch (CoreException e) {
+					importFailed("The autobuild could not be turned on again.", e);
+				}
+			}
 		}
-		
-		// Recursion for every project dependency.
-		for(String dependencyName:project.getProjectDependencies()){
-			recursiveBuildProjectsDependencySet(dependencyName, alreadyCountedProjectIds);
+		if(isCanceled()){
+			addImportStatus(IStatus.CANCEL, "The import was canceled.", null);
+		}
+		return importStatus.isOK() ? Status.OK_STATUS : importStatus;
+	}
+	
+	/**
+	 * Check if the import was canceled.
+	 * @return True if the cancel monitor was canceled.
+	 */
+	private boolean isCanceled() {
+		return cancelMonitor != null && cancelMonitor.isCanceled();
+	}
+	
+	/**
+	 * Add an error to the status of the import. Called from the open jobs too.
+	 * @param message Description of what failed.
+	 * @param exception Cause of the error. Can be null.
+	 */
+	private void importFailed(String message, CoreException exception) {
+		addImportStatus(IStatus.ERROR, message, exception);
+	}
+	
+	/**
+	 * Add a status to the status of the import. Called from the open jobs too.
+	 * @param severity Severity of the status.
+	 * @param message Description of the status.
+	 * @param exception Cause of the status. Can be null.
+	 */
+	private synchronized void addImportStatus(int severity, String message, Throwable exception) {
+		importStatus.add(new Status(severity, importStatus.getPlugin(), message, exception));
+	}
+	
+	/**
+	 * Turn the workspace autobuild on or off.
+	 * @param workspace Eclipse workspace.
+	 * @param autoBuilding True to turn the autobuild on.
+	 * @throws CoreException If the workspace description could not be changed.
+	 */
+	private static void setAutoBuilding(IWorkspace workspace, boolean autoBuilding) throws CoreException {
+		IWorkspaceDescription description = workspace.getDescription();
+		if(description.isAutoBuilding() != autoBuilding){
+			description.setAutoBuilding(autoBuilding);
+			workspace.setDescription(description);
+		}
+	}
+	
+	/**
+	 * Run one incremental build over the imported projects of the plan, in dependency order.
+	 * @param importPlan Imported plan.
+	 * @throws CoreException If the build failed.
+	 */
+	private void buildProjects(ImportPlan importPlan) throws CoreException {
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+		List<IBuildConfiguration> buildConfigurations = new ArrayList<IBuildConfiguration>(importPlan.size());
+		for(ProjectDefinition importedProject:importPlan.getProjects()){
+			IProject project = workspace.getRoot().getProject(importedProject.getProjectId());
+			if(project.isOpen()){
+				buildConfigurations.add(project.getActiveBuildConfig());
+			}
 		}
 		
-		// Count also test projects.
-		if(importTestProjects){
-			recursiveBuildProjectsDependencySet(projectId+TEST_PROJECT_SUFFIX, alreadyCountedProjectIds);
+		if(!buildConfigurations.isEmpty()){
+			workspace.build(buildConfigurations.toArray(new IBuildConfiguration[buildConfigurations.size()]),
+					IncrementalProjectBuilder.INCREMENTAL_BUILD, false, null);
 		}
-	};
+	}
 	
 	/**
-	 * Return the Set of all the projects and their dependencies that need to be imported.
-	 * @param projectsToImport List of projects you want to import.
-	 * @return Set off all the projects Set<String(projectId)> you have to import.
+	 * Create the projects of the plan and open them with parallel jobs.
+	 * @param importPlan Plan to import.
 	 */
-	private Set<String> getProjectsDependencySet(List<ProjectDefinition> projectsToImport) {
-		Set<String> allProjectsToImport = new HashSet<String>();
+	private void importPlanInParallel(final ImportPlan importPlan) {
+		final IProject[] createdProjects = new IProject[importPlan.size()];
+		runImportOperation(importPlan, new IWorkspaceRunnable() {
+			@Override
+			public void run(IProgressMonitor monitor) throws CoreException {
+				List<ProjectDefinition> projectsToImport = importPlan.getProjects();
+				for(int i=0;i<createdProjects.length;i++){
+					createdProjects[i] = createProject(projectsToImport.get(i));
+				}
+			}
+		});
 		
-		// Build recursively the set of projects that need to be imported.
-		for(ProjectDefinition project:projectsToImport){
-			recursiveBuildProjectsDependencySet(project.getProjectId(),allProjectsToImport);
+		try {
+			new ParallelProjectOpener(importPlan, createdProjects, importParallelism, this).openProjects();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
-		return allProjectsToImport;
 	}
 	
 	/**
-	 * Returns the total number of projects to import.
-	 * @param projectsToImport List of projects you want to import.
-	 * @return The total number of project that need to be imported (specified projects + their dependencies)
+	 * Run the import, in a single workspace operation if the import is batched.
+	 * @param importPlan Plan to import.
+	 * @param importRunnable Runnable importing the projects.
 	 */
-	public int getNumberOfProjectsToImport(List<ProjectDefinition> projectsToImport){
-		return getProjectsDependencySet(projectsToImport).size();
+	private void runImportOperation(ImportPlan importPlan, IWorkspaceRunnable importRunnable) {
+		try {
+			if(batchImport){
+				ResourcesPlugin.getWorkspace().run(importRunnable, getImportRule(importPlan), IWorkspace.AVOID_UPDATE, null);
+			}else{
+				importRunnable.run(null);
+			}
+		} catch (CoreException e) {
+			importFailed("The import operation failed.", e);
+		}
 	}
 	
 	/**
-	 * Import the provided projects with their dependencies.
-	 * @param projectsToImport List of projectIds to import.
+	 * Import the projects of the plan one by one.
+	 * @param importPlan Plan to import.
+	 */
+	private void importProjects(ImportPlan importPlan) {
+		for(ProjectDefinition projectToImport:importPlan.getProjects()){
+			importProject(projectToImport);
+		}
+	}
+	
+	/**
+	 * Return the scheduling rule needed to create and open all the projects of the plan.
+	 * @param importPlan Plan to import.
+	 * @return Combined scheduling rule of the plan.
 	 */
-	public void importProjectsWithDependencies(List<ProjectDefinition> projectsToImport) {
-		for(String projectId:getProjectsDependencySet(projectsToImport)){
-			importProject(projectDefinitions.get(projectId));
+	private ISchedulingRule getImportRule(ImportPlan importPlan) {
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+		IResourceRuleFactory ruleFactory = workspace.getRuleFactory();
+		ISchedulingRule rule = null;
+		for(ProjectDefinition projectToImport:importPlan.getProjects()){
+			IProject project = workspace.getRoot().getProject(projectToImport.getProjectId());
+			rule = MultiRule.combine(rule, ruleFactory.createRule(project));
+			rule = MultiRule.combine(rule, ruleFactory.modifyRule(project));
 		}
+		return rule;
 	}
 
 	/**
@@ -112,21 +359,67 @@ public class ProjectImporter {
 	 * @param projectToImport ProjectDefinition of the project you want to import.
 	 */
 	private void importProject(ProjectDefinition projectToImport) {
-		//TODO: Where to notify the user about what is going on??
-		System.out.println(projectToImport.getProjectId());
-		
+		IProject project = createProject(projectToImport);
+		if(project != null){
+			openProject(projectToImport, project);
+		}
+	}
+	
+	/**
+	 * Create the project in the Eclipse workspace. The project is left closed.
+	 * A project that already exists in the workspace at the same location is not created again, it is only opened,
+	 * so the same import can be repeated. A project with the same name at another location is a conflict.
+	 * @param projectToImport ProjectDefinition of the project you want to import.
+	 * @return The created or existing project, or null if it could not be created or the import was canceled.
+	 */
+	IProject createProject(ProjectDefinition projectToImport) {
+		if(isCanceled()){
+			return null;
+		}
+		long startTime = startPhase();
+		Object event = FlightRecorderEvents.begin(Type.PROJECT_CREATE);
 		try {
 			// Load and import the project into workspace.
-			IProjectDescription description = ResourcesPlugin.getWorkspace().loadProjectDescription(
-					new Path(projectToImport.getProjectPath()));
+			Path projectFile = new Path(projectToImport.getProjectPath());
+			IProjectDescription description = ResourcesPlugin.getWorkspace().loadProjectDescription(projectFile);
 			IProject project = ResourcesPlugin.getWorkspace().getRoot().getProject(description.getName());
+			if(project.exists()){
+				if(projectFile.removeLastSegments(1).equals(project.getLocation())){
+					return project;
+				}
+				importFailed("Project " + projectToImport.getProjectId() + " already exists in the workspace at "
+						+ project.getLocation() + ", it was not imported from " + projectToImport.getProjectPath() + ".", null);
+				return null;
+			}
 			project.create(description, null);
+			phaseCompleted(Phase.CREATE, projectToImport.getProjectId(), startTime);
+			FlightRecorderEvents.commitProject(event, projectToImport);
+			return project;
+		}catch (CoreException e) {
+			importFailed("Project " + projectToImport.getProjectId() + " could not be created from "
+					+ projectToImport.getProjectPath() + ".", e);
+			return null;
+		}
+	}
+	
+	/**
+	 * Open the created project and notify the monitor, unless the import was canceled.
+	 * @param projectToImport ProjectDefinition of the project.
+	 * @param project Created project.
+	 */
+	void openProject(ProjectDefinition projectToImport, IProject project) {
+		if(isCanceled()){
+			return;
+		}
+		long startTime = startPhase();
+		Object event = FlightRecorderEvents.begin(Type.PROJECT_OPEN);
+		try {
 			project.open(null);
-			
+			phaseCompleted(Phase.OPEN, projectToImport.getProjectId(), startTime);
+			FlightRecorderEvents.commitProject(event, projectToImport);
 			notifyProjectImported(projectToImport.getProjectId());
 		}catch (CoreException e) {
-			// TODO:Handle error.
-			e.printStackTrace();
+			importFailed("Project " + projectToImport.getProjectId() + " could not be opened.", e);
 		}
 	}
 	
@@ -138,11 +431,39 @@ public class ProjectImporter {
 		this.progressMonitor = progressMonitor;
 	}
 	
+	/**
+	 * Set the listener of the closure, create and open timings.
+	 * @param metricsListener Listener of the import metrics. Null to measure nothing.
+	 */
+	public void setMetricsListener(IMetricsListener metricsListener) {
+		this.metricsListener = metricsListener;
+	}
+	
+	/**
+	 * Return the start time of a measured phase.
+	 * @return Current time in nanoseconds, or 0 if nothing is measured.
+	 */
+	private long startPhase() {
+		return metricsListener == null ? 0 : System.nanoTime();
+	}
+	
+	/**
+	 * Notify the listener that a phase is done.
+	 * @param phase The phase.
+	 * @param subject Project id or description of what the phase worked on.
+	 * @param startTime Start time of the phase returned by {@link #startPhase()}.
+	 */
+	private void phaseCompleted(Phase phase, String subject, long startTime) {
+		if(metricsListener != null){
+			metricsListener.phaseCompleted(phase, subject, System.nanoTime() - startTime);
+		}
+	}
+	
 	/**
 	 * Notify the monitor a project was imported.
 	 * @param projectId ProjectId of the imported project.
 	 */
-	private void notifyProjectImported(String projectId) {
+	private synchronized void notifyProjectImported(String projectId) {
 		if(progressMonitor!=null){
 			progressMonitor.notifyImportCompleted(projectId);
 		}
@@ -0,0 +1,145 @@
+package org.csstudio.util.importwizard.project.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.csstudio.util.importwizard.project.DependencyGraph;
+
+
+/**
+ * <code>TargetPlatformBundles</code>
+ * is the set of bundle ids a target platform provides. Projects with these ids need not be imported as source projects
+ * when they are only dependencies, the target platform satisfies them.</br>
+ * The bundles are read from the active PDE target platform with {@link #fromActiveTarget()}, or from a bundle list with
+ * {@link #fromBundleList(Path)} for the headless import.
+ *
+ */
+public class TargetPlatformBundles {
+	private static final String COMMENT_PREFIX = "#";
+	private static final String JAR_SUFFIX = ".jar";
+
+	private final Set<String> bundleIds;
+
+	/**
+	 * Constructor
+	 * @param bundleIds Ids of the bundles the target platform provides.
+	 */
+	public TargetPlatformBundles(Set<String> bundleIds) {
+		this.bundleIds = Collections.unmodifiableSet(new HashSet<String>(bundleIds));
+	}
+
+	/**
+	 * Read the bundles of the active PDE target platform.
+	 * @return Bundles of the target platform, or null if PDE is not installed.
+	 */
+	public static TargetPlatformBundles fromActiveTarget() {
+		try {
+			return new TargetPlatformBundles(PdeTargetPlatformReader.readBundleIds());
+		} catch (NoClassDefFoundError e) {
+			// PDE is an optional dependency.
+			return null;
+		}
+	}
+
+	/**
+	 * Read a bundle list. Every line holds one bundle, either as a bundle id, optionally followed by <code>;</code> or
+	 * white space and a version, or as the name of a bundle jar or directory, e.g. <code>org.eclipse.ui_3.100.0.v2015.jar</code>,
+	 * so a listing of a target <code>plugins</code> directory can be used as it is. Empty lines and lines starting with
+	 * <code>#</code> are skipped.
+	 * @param bundleList Location on disk of the bundle list.
+	 * @return Bundles of the list.
+	 * @throws IOException Error while reading the file.
+	 */
+	public static TargetPlatformBundles fromBundleList(Path bundleList) throws IOException {
+		Set<String> bundleIds = new HashSet<String>();
+		try(BufferedReader reader = Files.newBufferedReader(bundleList, StandardCharsets.UTF_8)){
+			String line;
+			while((line = reader.readLine()) != null){
+				String bundleId = parseBundleId(line.trim());
+				if(bundleId != null){
+					bundleIds.add(bundleId);
+				}
+			}
+		}
+		return new TargetPlatformBundles(bundleIds);
+	}
+
+	/**
+	 * Take the bundle id from a line of a bundle list.
+	 * @param line Trimmed line.
+	 * @return Bundle id, or null if the line is empty or a comment.
+	 */
+	private static String parseBundleId(String line) {
+		if(line.isEmpty() || line.startsWith(COMMENT_PREFIX)){
+			return null;
+		}
+		int end = 0;
+		while(end < line.length() && line.charAt(end) != ';' && !Character.isWhitespace(line.charAt(end))){
+			end++;
+		}
+		String bundleId = line.substring(0, end);
+		if(bundleId.endsWith(JAR_SUFFIX)){
+			bundleId = bundleId.substring(0, bundleId.length() - JAR_SUFFIX.length());
+		}
+
+		// Cut the version of a bundle jar or directory name: the first '_' followed by digits and a '.',
+		// so ids like org.eclipse.swt.gtk.linux.x86_64 are kept whole.
+		for(int i=bundleId.indexOf('_');i >= 0;i=bundleId.indexOf('_', i + 1)){
+			int digitsEnd = i + 1;
+			while(digitsEnd < bundleId.length() && Character.isDigit(bundleId.charAt(digitsEnd))){
+				digitsEnd++;
+			}
+			if(digitsEnd > i + 1 && digitsEnd < bundleId.length() && bundleId.charAt(digitsEnd) == '.'){
+				return bundleId.substring(0, i);
+			}
+		}
+		return bundleId;
+	}
+
+	/**
+	 * Check if the target platform provides a bundle.
+	 * @param bundleId Id of the bundle.
+	 * @return True if the bundle is in the target platform.
+	 */
+	public boolean contains(String bundleId) {
+		return bundleIds.contains(bundleId);
+	}
+
+	/**
+	 * Return the ids of the bundles.
+	 * @return Unmodifiable set of the bundle ids.
+	 */
+	public Set<String> getBundleIds() {
+		return bundleIds;
+	}
+
+	/**
+	 * Return the number of bundles.
+	 * @return Number of bundles the target platform provides.
+	 */
+	public int size() {
+		return bundleIds.size();
+	}
+
+	/**
+	 * Return the nodes of the graph the target platform provides, to be cut from the closures.
+	 * @param dependencyGraph Graph of the loaded projects.
+	 * @return Bit set of the provided nodes.
+	 */
+	public BitSet getProvidedNodes(DependencyGraph dependencyGraph) {
+		BitSet providedNodes = new BitSet(dependencyGraph.size());
+		for(int node=0;node<dependencyGraph.size();node++){
+			if(bundleIds.contains(dependencyGraph.getProject(node).getProjectId())){
+				providedNodes.set(node);
+			}
+		}
+		return providedNodes;
+	}
+}
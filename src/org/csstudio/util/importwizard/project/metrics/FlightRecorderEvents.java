@@ -0,0 +1,274 @@
+package org.csstudio.util.importwizard.project.metrics;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.csstudio.util.importwizard.project.ProjectDefinition;
+
+
+/**
+ * <code>FlightRecorderEvents</code>
+ * emits Java Flight Recorder events of the scan and the import, to find the slow project or file in a recording.</br>
+ * The plug-in runs on Java 7, so the event types are created at runtime with <code>jdk.jfr.EventFactory</code> through
+ * reflection. On a JVM without the flight recorder, or while no recording has an event type enabled, {@link #begin(Type)}
+ * returns null after reading one volatile field and nothing else is done. The enabled types are refreshed whenever
+ * a recording starts or stops.
+ * The commit methods take the objects the values are read from, so nothing is converted while the event is null.
+ * <pre>
+ * Object event = FlightRecorderEvents.begin(Type.PROJECT_OPEN);
+ * project.open(null);
+ * FlightRecorderEvents.commitProject(event, projectDefinition);
+ * </pre>
+ *
+ */
+public final class FlightRecorderEvents {
+	private static final String EVENT_NAME_PREFIX = "org.csstudio.importwizard.";
+	private static final String CATEGORY = "CSS Import Wizard";
+
+	/**
+	 * <code>Type</code>
+	 * is a type of the emitted events, with the names and types of its fields.
+	 */
+	public enum Type {
+		/** Scan of a directory with its sub directories. Fields: path. */
+		DIRECTORY_VISIT("DirectoryVisit", "Directory Visit", new String[]{"path"}, new Class<?>[]{String.class}),
+		/** Parse of a <code>.project</code>, <code>MANIFEST.MF</code> or <code>feature.xml</code>. Fields: projectId, path, bytesRead. */
+		DESCRIPTOR_PARSE("DescriptorParse", "Descriptor Parse", new String[]{"projectId", "path", "bytesRead"},
+				new Class<?>[]{String.class, String.class, long.class}),
+		/** Closure of one or more projects. Fields: projectId, selectedProjects, closureSize. */
+		CLOSURE("Closure", "Closure", new String[]{"projectId", "selectedProjects", "closureSize"},
+				new Class<?>[]{String.class, int.class, int.class}),
+		/** Creation of a project in the workspace. Fields: projectId, path. */
+		PROJECT_CREATE("ProjectCreate", "Project Create", new String[]{"projectId", "path"}, new Class<?>[]{String.class, String.class}),
+		/** Opening of a created project. Fields: projectId, path. */
+		PROJECT_OPEN("ProjectOpen", "Project Open", new String[]{"projectId", "path"}, new Class<?>[]{String.class, String.class});
+
+		private final String name;
+		private final String label;
+		private final String[] fieldNames;
+		private final Class<?>[] fieldTypes;
+
+		/**
+		 * Constructor
+		 * @param name Name of the event type, without the prefix.
+		 * @param label Label of the event type shown in the recording.
+		 * @param fieldNames Names of the fields.
+		 * @param fieldTypes Types of the fields.
+		 */
+		private Type(String name, String label, String[] fieldNames, Class<?>[] fieldTypes) {
+			this.name = name;
+			this.label = label;
+			this.fieldNames = fieldNames;
+			this.fieldTypes = fieldTypes;
+		}
+	}
+
+	private static final Object[] FACTORIES = new Object[Type.values().length];
+	private static final Object[] EVENT_TYPES = new Object[Type.values().length];
+	private static Method newEvent;
+	private static Method isEnabled;
+	private static Method begin;
+	private static Method end;
+	private static Method shouldCommit;
+	private static Method set;
+	private static Method commit;
+	private static volatile boolean[] enabledTypes = new boolean[Type.values().length];
+
+	static {
+		try {
+			initialize();
+		} catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+			// No flight recorder, no type is ever enabled.
+		}
+	}
+
+	private FlightRecorderEvents() {
+	}
+
+	/**
+	 * Create the event types and register for the recording changes.
+	 * @throws ReflectiveOperationException If the flight recorder API is missing.
+	 */
+	@SuppressWarnings("unchecked")
+	private static void initialize() throws ReflectiveOperationException {
+		ClassLoader loader = ClassLoader.getSystemClassLoader();
+		Class<?> flightRecorder = Class.forName("jdk.jfr.FlightRecorder", true, loader);
+		if(!(Boolean) flightRecorder.getMethod("isAvailable").invoke(null)){
+			return;
+		}
+		Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory", true, loader);
+		Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement", true, loader);
+		Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor", true, loader);
+		Class<?> event = Class.forName("jdk.jfr.Event", true, loader);
+		Class<? extends Annotation> nameAnnotation = (Class<? extends Annotation>) Class.forName("jdk.jfr.Name", true, loader);
+		Class<? extends Annotation> labelAnnotation = (Class<? extends Annotation>) Class.forName("jdk.jfr.Label", true, loader);
+		Class<? extends Annotation> categoryAnnotation = (Class<? extends Annotation>) Class.forName("jdk.jfr.Category", true, loader);
+		Constructor<?> newAnnotation = annotationElement.getConstructor(Class.class, Object.class);
+		Constructor<?> newField = valueDescriptor.getConstructor(Class.class, String.class);
+		Method create = eventFactory.getMethod("create", List.class, List.class);
+		Method getEventType = eventFactory.getMethod("getEventType");
+
+		for(Type type:Type.values()){
+			List<Object> annotations = new ArrayList<Object>();
+			annotations.add(newAnnotation.newInstance(nameAnnotation, EVENT_NAME_PREFIX + type.name));
+			annotations.add(newAnnotation.newInstance(labelAnnotation, type.label));
+			annotations.add(newAnnotation.newInstance(categoryAnnotation, new String[]{CATEGORY}));
+			List<Object> fields = new ArrayList<Object>();
+			for(int i=0;i<type.fieldNames.length;i++){
+				fields.add(newField.newInstance(type.fieldTypes[i], type.fieldNames[i]));
+			}
+			FACTORIES[type.ordinal()] = create.invoke(null, annotations, fields);
+			EVENT_TYPES[type.ordinal()] = getEventType.invoke(FACTORIES[type.ordinal()]);
+		}
+		newEvent = eventFactory.getMethod("newEvent");
+		isEnabled = Class.forName("jdk.jfr.EventType", true, loader).getMethod("isEnabled");
+		begin = event.getMethod("begin");
+		end = event.getMethod("end");
+		shouldCommit = event.getMethod("shouldCommit");
+		set = event.getMethod("set", int.class, Object.class);
+		commit = event.getMethod("commit");
+
+		// Refresh the enabled types when a recording starts or stops.
+		Class<?> listener = Class.forName("jdk.jfr.FlightRecorderListener", true, loader);
+		Object proxy = Proxy.newProxyInstance(loader, new Class<?>[]{listener}, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if("recordingStateChanged".equals(method.getName())){
+					refreshEnabledTypes();
+				}else if("equals".equals(method.getName())){
+					return proxy == args[0];
+				}else if("hashCode".equals(method.getName())){
+					return System.identityHashCode(proxy);
+				}else if("toString".equals(method.getName())){
+					return FlightRecorderEvents.class.getName();
+				}
+				return null;
+			}
+		});
+		flightRecorder.getMethod("addListener", listener).invoke(null, proxy);
+		refreshEnabledTypes();
+	}
+
+	/**
+	 * Read which event types are enabled in the running recordings.
+	 */
+	private static void refreshEnabledTypes() {
+		boolean[] enabled = new boolean[EVENT_TYPES.length];
+		try {
+			for(int i=0;i<EVENT_TYPES.length;i++){
+				enabled[i] = EVENT_TYPES[i] != null && (Boolean) isEnabled.invoke(EVENT_TYPES[i]);
+			}
+		} catch (ReflectiveOperationException e) {
+			enabled = new boolean[EVENT_TYPES.length];
+		}
+		enabledTypes = enabled;
+	}
+
+	/**
+	 * Check if events of the type are recorded.
+	 * @param type Event type.
+	 * @return True if a running recording has the type enabled.
+	 */
+	public static boolean isEnabled(Type type) {
+		return enabledTypes[type.ordinal()];
+	}
+
+	/**
+	 * Start an event.
+	 * @param type Event type.
+	 * @return The started event, or null if the type is not recorded.
+	 */
+	public static Object begin(Type type) {
+		if(!enabledTypes[type.ordinal()]){
+			return null;
+		}
+		try {
+			Object event = newEvent.invoke(FACTORIES[type.ordinal()]);
+			begin.invoke(event);
+			return event;
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Commit a {@link Type#DIRECTORY_VISIT} event.
+	 * @param event Event returned by {@link #begin(Type)}. Nothing is done if it is null.
+	 * @param directory Visited directory.
+	 */
+	public static void commitDirectoryVisit(Object event, Path directory) {
+		if(event != null){
+			commit(event, directory.toString());
+		}
+	}
+
+	/**
+	 * Commit a {@link Type#DESCRIPTOR_PARSE} event.
+	 * @param event Event returned by {@link #begin(Type)}. Nothing is done if it is null.
+	 * @param projectId Id of the project, null if it is not known yet.
+	 * @param file Parsed descriptor.
+	 */
+	public static void commitDescriptorParse(Object event, String projectId, Path file) {
+		if(event != null){
+			long bytesRead;
+			try {
+				bytesRead = Files.size(file);
+			} catch (IOException e) {
+				bytesRead = -1;
+			}
+			commit(event, projectId, file.toString(), bytesRead);
+		}
+	}
+
+	/**
+	 * Commit a {@link Type#CLOSURE} event.
+	 * @param event Event returned by {@link #begin(Type)}. Nothing is done if it is null.
+	 * @param projectId Id of the project, null for the closure of several projects.
+	 * @param selectedProjects Number of projects the closure was computed for.
+	 * @param closure The computed closure.
+	 */
+	public static void commitClosure(Object event, String projectId, int selectedProjects, BitSet closure) {
+		if(event != null){
+			commit(event, projectId, selectedProjects, closure.cardinality());
+		}
+	}
+
+	/**
+	 * Commit a {@link Type#PROJECT_CREATE} or {@link Type#PROJECT_OPEN} event.
+	 * @param event Event returned by {@link #begin(Type)}. Nothing is done if it is null.
+	 * @param projectDefinition Created or opened project.
+	 */
+	public static void commitProject(Object event, ProjectDefinition projectDefinition) {
+		if(event != null){
+			commit(event, projectDefinition.getProjectId(), projectDefinition.getProjectPath());
+		}
+	}
+
+	/**
+	 * End an event and commit it with the values of its fields, if it passes the threshold of the recording.
+	 * @param event Started event.
+	 * @param values Values of the fields, in the order of the {@link Type} fields.
+	 */
+	private static void commit(Object event, Object... values) {
+		try {
+			end.invoke(event);
+			if((Boolean) shouldCommit.invoke(event)){
+				for(int i=0;i<values.length;i++){
+					set.invoke(event, i, values[i]);
+				}
+				commit.invoke(event);
+			}
+		} catch (ReflectiveOperationException e) {
+			// The event is lost, the scan or import goes on.
+		}
+	}
+}
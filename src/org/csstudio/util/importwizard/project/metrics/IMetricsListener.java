@@ -0,0 +1,102 @@
+package org.csstudio.util.importwizard.project.metrics;
+
+
+/**
+ * <code>IMetricsListener</code>
+ * receives the timings and counters of the scan and the import.</br>
+ * The listener can be set on the {@link org.csstudio.util.importwizard.project.provider.FSProjectDefinitionProvider FSProjectDefinitionProvider}
+ * and the {@link org.csstudio.util.importwizard.project.importer.ProjectImporter ProjectImporter}. Nothing is measured when no listener is set.
+ * A parallel scan or import calls the listener from several threads at once.
+ * Implementations: {@link org.csstudio.util.importwizard.project.metrics.ImportMetrics ImportMetrics}
+ *
+ */
+public interface IMetricsListener {
+	/**
+	 * <code>Phase</code>
+	 * is a timed step of the scan or the import.
+	 */
+	public enum Phase {
+		/** Walk of the whole tree, once per scan. */
+		WALK("walk"),
+		/** Read of a <code>.project</code> file. */
+		PROJECT_READ(".project read"),
+		/** Parse of a <code>MANIFEST.MF</code>. */
+		MANIFEST_PARSE("manifest parse"),
+		/** Parse of a <code>feature.xml</code>. */
+		FEATURE_PARSE("feature parse"),
+		/** Closure and import plan of the selected projects. */
+		CLOSURE("closure"),
+		/** Creation of a project in the workspace. */
+		CREATE("create"),
+		/** Opening of a created project. */
+		OPEN("open");
+
+		private final String label;
+
+		/**
+		 * Constructor
+		 * @param label Name of the phase in the summary.
+		 */
+		private Phase(String label) {
+			this.label = label;
+		}
+
+		/**
+		 * Return the name of the phase in the summary.
+		 * @return Name of the phase.
+		 */
+		public String getLabel() {
+			return label;
+		}
+	}
+
+	/**
+	 * <code>Counter</code>
+	 * is a counted event of the scan or the import.
+	 */
+	public enum Counter {
+		/** Directories the scan listed. */
+		DIRECTORIES_VISITED("directories visited"),
+		/** Directories the scan did not descend into. */
+		DIRECTORIES_SKIPPED("directories skipped"),
+		/** Descriptor files read and parsed. */
+		FILES_PARSED("files parsed"),
+		/** Bytes of the parsed descriptor files. */
+		BYTES_READ("bytes read"),
+		/** Projects taken from the scan index without parsing their descriptors, and projects left out because a descriptor is malformed. */
+		PROJECTS_SKIPPED("projects skipped");
+
+		private final String label;
+
+		/**
+		 * Constructor
+		 * @param label Name of the counter in the summary.
+		 */
+		private Counter(String label) {
+			this.label = label;
+		}
+
+		/**
+		 * Return the name of the counter in the summary.
+		 * @return Name of the counter.
+		 */
+		public String getLabel() {
+			return label;
+		}
+	}
+
+	/**
+	 * Called when a phase is done.
+	 * @param phase The phase.
+	 * @param subject Project id or path of the file the phase worked on.
+	 * @param durationNanos Duration of the phase in nanoseconds.
+	 */
+	public void phaseCompleted(Phase phase, String subject, long durationNanos);
+
+	/**
+	 * Called when a counter changes.
+	 * @param counter The counter.
+	 * @param amount Amount added to the counter.
+	 */
+	public void counterIncremented(Counter counter, long amount);
+}
@@ -0,0 +1,119 @@
+package org.csstudio.util.importwizard.project.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * <code>ImportMetrics</code>
+ * sums up the timings and counters of the scan and the import, e.g. to log them when the import is done.</br>
+ * It is thread safe and can be set as the listener of a parallel scan or import.
+ *
+ */
+public class ImportMetrics implements IMetricsListener {
+	private static final int PHASE_COUNT = Phase.values().length;
+
+	private final AtomicLongArray phaseCounts = new AtomicLongArray(PHASE_COUNT);
+	private final AtomicLongArray phaseNanos = new AtomicLongArray(PHASE_COUNT);
+	private final AtomicLongArray phaseMaxNanos = new AtomicLongArray(PHASE_COUNT);
+	private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+
+	@Override
+	public void phaseCompleted(Phase phase, String subject, long durationNanos) {
+		int index = phase.ordinal();
+		phaseCounts.incrementAndGet(index);
+		phaseNanos.addAndGet(index, durationNanos);
+		long max = phaseMaxNanos.get(index);
+		while(durationNanos > max && !phaseMaxNanos.compareAndSet(index, max, durationNanos)){
+			max = phaseMaxNanos.get(index);
+		}
+	}
+
+	@Override
+	public void counterIncremented(Counter counter, long amount) {
+		counters.addAndGet(counter.ordinal(), amount);
+	}
+
+	/**
+	 * Return how many times the phase was completed.
+	 * @param phase The phase.
+	 * @return Number of completed phases.
+	 */
+	public long getPhaseCount(Phase phase) {
+		return phaseCounts.get(phase.ordinal());
+	}
+
+	/**
+	 * Return the total duration of the phase. Phases running in parallel are all counted.
+	 * @param phase The phase.
+	 * @return Total duration in nanoseconds.
+	 */
+	public long getPhaseNanos(Phase phase) {
+		return phaseNanos.get(phase.ordinal());
+	}
+
+	/**
+	 * Return the longest single duration of the phase.
+	 * @param phase The phase.
+	 * @return Longest duration in nanoseconds.
+	 */
+	public long getPhaseMaxNanos(Phase phase) {
+		return phaseMaxNanos.get(phase.ordinal());
+	}
+
+	/**
+	 * Return the value of a counter.
+	 * @param counter The counter.
+	 * @return Value of the counter.
+	 */
+	public long getCounter(Counter counter) {
+		return counters.get(counter.ordinal());
+	}
+
+	/**
+	 * Set all the timings and counters to zero.
+	 */
+	public void reset() {
+		for(int i=0;i<PHASE_COUNT;i++){
+			phaseCounts.set(i, 0);
+			phaseNanos.set(i, 0);
+			phaseMaxNanos.set(i, 0);
+		}
+		for(int i=0;i<counters.length();i++){
+			counters.set(i, 0);
+		}
+	}
+
+	/**
+	 * Return the summary of the phases that were completed and all the counters, one per line.
+	 * @return Summary text.
+	 */
+	public String getSummary() {
+		StringBuilder summary = new StringBuilder();
+		for(Phase phase:Phase.values()){
+			long count = getPhaseCount(phase);
+			if(count > 0){
+				summary.append(phase.getLabel()).append(": ").append(count).append("x, total ")
+						.append(toMillis(getPhaseNanos(phase))).append(" ms, max ").append(toMillis(getPhaseMaxNanos(phase)))
+						.append(" ms\n");
+			}
+		}
+		for(Counter counter:Counter.values()){
+			summary.append(counter.getLabel()).append(": ").append(getCounter(counter)).append('\n');
+		}
+		return summary.toString();
+	}
+
+	/**
+	 * Convert nanoseconds to milliseconds, keeping one decimal.
+	 * @param nanos Duration in nanoseconds.
+	 * @return Duration in milliseconds.
+	 */
+	private static String toMillis(long nanos) {
+		return String.valueOf(Math.round(nanos / 100000.0) / 10.0);
+	}
+
+	@Override
+	public String toString() {
+		return getSummary();
+	}
+}
@@ -1,166 +1,562 @@
 package org.csstudio.util.importwizard.project.provider;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.jar.Attributes;
-import java.util.jar.Manifest;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.csstudio.util.importwizard.project.ProjectDefinition;
-import org.eclipse.core.resources.IProjectDescription;
-import org.eclipse.core.resources.ResourcesPlugin;
-import org.eclipse.core.runtime.CoreException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
+import org.csstudio.util.importwizard.project.metrics.FlightRecorderEvents;
+import org.csstudio.util.importwizard.project.metrics.FlightRecorderEvents.Type;
+import org.csstudio.util.importwizard.project.metrics.IMetricsListener;
+import org.csstudio.util.importwizard.project.metrics.IMetricsListener.Counter;
+import org.csstudio.util.importwizard.project.metrics.IMetricsListener.Phase;
 
 
 /**
  * <code>FSProjectDefinitionProvider</code>
- * reads {@link org.csstudio.util.importwizard.project.ProjectDefinition ProjectDefinition}s from the file system.
+ * reads {@link org.csstudio.util.importwizard.project.ProjectDefinition ProjectDefinition}s from the file system.</br>
+ * The public constructors scan the tree right away and keep the found projects in a map. If several projects have
+ * the same id, the one with the first path in alphabetical order is kept. The provider created by
+ * {@link #createStreamingProvider(String, int, ScanIndex, ScanPruningRules)} scans only when it is asked to and passes
+ * the projects to a sink without keeping them.
  *
  * @author <a href="mailto:andrej.babic@cosylab.com">Andrej Babi</a>
  *
  */
-public class FSProjectDefinitionProvider extends SimpleFileVisitor<Path> implements IProjectsDefinitionProvider {
+public class FSProjectDefinitionProvider extends SimpleFileVisitor<Path> implements IProjectsDefinitionProvider,
+		IStreamingProjectsDefinitionProvider {
 	private static final String NAME_MANIFEST_DEPENDENCY = "Require-Bundle";
+	private static final String NAME_MANIFEST_EXPORT_PACKAGE = "Export-Package";
+	private static final String NAME_MANIFEST_IMPORT_PACKAGE = "Import-Package";
 	private static final String FILENAME_PROJECT = ".project";
 	private static final String FILENAME_FEATURE = "feature.xml";
 	private static final String FILENAME_MANIFEST = "META-INF/MANIFEST.MF";
 	
-	private Map<String,ProjectDefinition> projectDefinitions = new HashMap<String, ProjectDefinition>();
+	private final Map<String,ProjectDefinition> projectDefinitions;
+	private final ScanIndex scanIndex;
+	private final ScanPruningRules pruningRules;
+	private final int parallelism;
+	private IProjectDefinitionSink sink;
+	private IMetricsListener metricsListener;
+	private final AtomicInteger skippedDirectories = new AtomicInteger();
+	private final List<String> scanWarnings = Collections.synchronizedList(new ArrayList<String>());
+	private final Deque<Object> directoryEvents = new ArrayDeque<Object>();
+	private final Deque<Path> directoryEventPaths = new ArrayDeque<Path>();
+	private final Path scanRoot;
 	
 	/**
-	 * Constructs the ProjectDefinition file system reader.
+	 * Constructs the ProjectDefinition file system reader. The scan runs sequentially on the calling thread.
 	 * @param path Must be non-empty. Specify root path from which the recursive scan will start.
 	 * @throws IOException In case of file system read error.
 	 */
 	public FSProjectDefinitionProvider(String path) throws IOException{
+		this(path, 1);
+	}
+	
+	/**
+	 * Constructs the ProjectDefinition file system reader.
+	 * @param path Must be non-empty. Specify root path from which the recursive scan will start.
+	 * @param parallelism Number of threads scanning the subtrees. With 1 or less the scan runs sequentially on the calling thread.
+	 * @throws IOException In case of file system read error.
+	 */
+	public FSProjectDefinitionProvider(String path, int parallelism) throws IOException{
+		this(path, parallelism, null);
+	}
+	
+	/**
+	 * Constructs the ProjectDefinition file system reader backed by a persistent scan index.
+	 * Projects whose descriptors did not change since they were indexed are taken from the index instead of being parsed.
+	 * @param path Must be non-empty. Specify root path from which the recursive scan will start.
+	 * @param parallelism Number of threads scanning the subtrees. With 1 or less the scan runs sequentially on the calling thread.
+	 * @param scanIndex Index of the root path, updated with the scan results. Can be null.
+	 * @throws IOException In case of file system read error.
+	 */
+	public FSProjectDefinitionProvider(String path, int parallelism, ScanIndex scanIndex) throws IOException{
+		this(path, parallelism, scanIndex, null);
+	}
+	
+	/**
+	 * Constructs the ProjectDefinition file system reader backed by a persistent scan index, which does not descend
+	 * into the directories matching the pruning rules.
+	 * @param path Must be non-empty. Specify root path from which the recursive scan will start.
+	 * @param parallelism Number of threads scanning the subtrees. With 1 or less the scan runs sequentially on the calling thread.
+	 * @param scanIndex Index of the root path, updated with the scan results. Can be null.
+	 * @param pruningRules Directories to skip. Can be null, then the whole tree is scanned.
+	 * @throws IOException In case of file system read error.
+	 */
+	public FSProjectDefinitionProvider(String path, int parallelism, ScanIndex scanIndex, ScanPruningRules pruningRules) throws IOException{
+		this(path, parallelism, scanIndex, pruningRules, null);
+	}
+	
+	/**
+	 * Constructs the ProjectDefinition file system reader, which passes every project to the sink as soon as it is found.
+	 * @param path Must be non-empty. Specify root path from which the recursive scan will start.
+	 * @param parallelism Number of threads scanning the subtrees. With 1 or less the scan runs sequentially on the calling thread.
+	 * @param scanIndex Index of the root path, updated with the scan results. Can be null.
+	 * @param pruningRules Directories to skip. Can be null, then the whole tree is scanned.
+	 * @param sink Receives the found projects and can cancel the scan. Can be null.
+	 * @throws IOException In case of file system read error.
+	 * @throws CancellationException If the sink canceled the scan.
+	 */
+	public FSProjectDefinitionProvider(String path, int parallelism, ScanIndex scanIndex, ScanPruningRules pruningRules,
+			IProjectDefinitionSink sink) throws IOException{
+		this(toScanRoot(path), parallelism, scanIndex, pruningRules, new HashMap<String, ProjectDefinition>());
+		this.sink = sink;
+		scan();
+		this.sink = null;
+	}
+	
+	/**
+	 * Constructs the reader without scanning.
+	 * @param scanRoot Root path from which the recursive scan will start.
+	 * @param parallelism Number of threads scanning the subtrees.
+	 * @param scanIndex Index of the root path. Can be null.
+	 * @param pruningRules Directories to skip. Can be null.
+	 * @param projectDefinitions Map to keep the found projects in. Null to only pass them to the sink.
+	 */
+	private FSProjectDefinitionProvider(Path scanRoot, int parallelism, ScanIndex scanIndex, ScanPruningRules pruningRules,
+			Map<String, ProjectDefinition> projectDefinitions) {
+		this.scanRoot = scanRoot;
+		this.parallelism = parallelism;
+		this.scanIndex = scanIndex;
+		this.pruningRules = pruningRules;
+		this.projectDefinitions = projectDefinitions;
+	}
+	
+	/**
+	 * Create a provider that scans the tree only when {@link #streamProjectDefinitions(IProjectDefinitionSink)} is called
+	 * and does not keep the found projects. {@link #getProjectDefinitions()} of the provider is always empty.
+	 * @param path Must be non-empty. Specify root path from which the recursive scan will start.
+	 * @param parallelism Number of threads scanning the subtrees. With 1 or less the scan runs sequentially on the calling thread.
+	 * @param scanIndex Index of the root path, updated with the scan results. Can be null.
+	 * @param pruningRules Directories to skip. Can be null, then the whole tree is scanned.
+	 * @return Streaming provider of the path.
+	 */
+	public static FSProjectDefinitionProvider createStreamingProvider(String path, int parallelism, ScanIndex scanIndex,
+			ScanPruningRules pruningRules) {
+		return new FSProjectDefinitionProvider(toScanRoot(path), parallelism, scanIndex, pruningRules, null);
+	}
+	
+	/**
+	 * Check and convert the root path of the scan.
+	 * @param path Root path.
+	 * @return Root path of the scan.
+	 */
+	private static Path toScanRoot(String path) {
 		if(path == null || path.isEmpty()){
 			throw new IllegalArgumentException("Path cannot be null or empty.");
 		}
+		return Paths.get(path);
+	}
 	
-		Files.walkFileTree(Paths.get(path), this);
+	/**
+	 * Set the listener of the scan timings and counters. The projects found by the constructors are scanned before
+	 * a listener can be set, use a {@link #createStreamingProvider(String, int, ScanIndex, ScanPruningRules) streaming provider}
+	 * to measure a scan.
+	 * @param metricsListener Listener of the scan metrics. Null to measure nothing.
+	 */
+	public void setMetricsListener(IMetricsListener metricsListener) {
+		this.metricsListener = metricsListener;
+	}
+	
+	/**
+	 * Scan the tree again and pass the found projects to the sink. A provider created by one of the constructors also
+	 * adds them to its map. Only one scan runs at a time, the skipped directory count is the one of the last scan.
+	 * @param sink Receives the found projects and can cancel the scan.
+	 * @throws IOException In case of file system read error.
+	 * @throws CancellationException If the sink canceled the scan.
+	 */
+	@Override
+	public synchronized void streamProjectDefinitions(IProjectDefinitionSink sink) throws IOException {
+		if(sink == null){
+			throw new IllegalArgumentException("Sink cannot be null.");
+		}
+		skippedDirectories.set(0);
+		this.sink = sink;
+		try {
+			scan();
+		} finally {
+			this.sink = null;
+		}
+	}
+	
+	/**
+	 * Scan the tree, sequentially or in parallel.
+	 * @throws IOException In case of file system read error.
+	 */
+	private void scan() throws IOException {
+		long startTime = startPhase();
+		scanWarnings.clear();
+		directoryEvents.clear();
+		directoryEventPaths.clear();
+		if(parallelism > 1){
+			scanInParallel(scanRoot, parallelism);
+		}else{
+			Files.walkFileTree(scanRoot, this);
+		}
+		if(metricsListener != null){
+			metricsListener.phaseCompleted(Phase.WALK, scanRoot.toString(), System.nanoTime() - startTime);
+			metricsListener.counterIncremented(Counter.DIRECTORIES_SKIPPED, skippedDirectories.get());
+		}
+	}
+	
+	@Override
+	public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attr) throws IOException {
+		checkCanceled();
+		if(!dir.equals(scanRoot) && isPruned(dir)){
+			return FileVisitResult.SKIP_SUBTREE;
+		}
+		
+		// Read the project and skip the rest of its directory, the scan root included.
+		Path projectFile = getStopProjectFile(dir);
+		if(projectFile != null){
+			visitFile(projectFile, Files.readAttributes(projectFile, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS));
+			return FileVisitResult.SKIP_SUBTREE;
+		}
+		visitingDirectory(dir);
+		return FileVisitResult.CONTINUE;
+	}
+	
+	@Override
+	public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+		if(!directoryEventPaths.isEmpty() && directoryEventPaths.peek().equals(dir)){
+			directoryEventPaths.pop();
+			FlightRecorderEvents.commitDirectoryVisit(directoryEvents.pop(), dir);
+		}
+		return super.postVisitDirectory(dir, exc);
+	}
+	
+	/**
+	 * Count a directory the sequential walk descends into and start its flight recorder event.
+	 * The event is committed when the walk leaves the directory.
+	 * @param directory Visited directory.
+	 */
+	private void visitingDirectory(Path directory) {
+		countVisitedDirectory();
+		Object event = FlightRecorderEvents.begin(Type.DIRECTORY_VISIT);
+		if(event != null){
+			directoryEvents.push(event);
+			directoryEventPaths.push(directory);
+		}
 	}
 	
 	@Override
 	public FileVisitResult visitFile(Path file, BasicFileAttributes attr) throws FileNotFoundException, IOException{
 		// We found a project.
-		if(file.getFileName().endsWith(FILENAME_PROJECT) && attr.isRegularFile()){
-			try {
-				String projectPath = file.toString();
-				ArrayList<String> dependenciesInCurrentProject = new ArrayList<String>();
-				
-				// Read project description.
-				IProjectDescription projectDescription = ResourcesPlugin.getWorkspace().loadProjectDescription(new FileInputStream(projectPath));
-				String projectName = projectDescription.getName();
-				
-				// Read feature description if exists (if it's a feature).
-				Path featurePath = file.getParent().resolve(FILENAME_FEATURE);
-				if(Files.exists(featurePath)){
-					processFeatureDescriptor(dependenciesInCurrentProject,featurePath);
-				}
-				
-				// Read project manifest if exists.
-				Path manifestPath = file.getParent().resolve(FILENAME_MANIFEST);
-				if(Files.exists(manifestPath)){
-					processPluginManifest(dependenciesInCurrentProject,manifestPath);
-				}
-				
-				projectDefinitions.put(projectName, new ProjectDefinition(projectName, projectPath, dependenciesInCurrentProject));
-			} catch (CoreException e) {
-				throw new IOException("There was a problem while reading the project description: "+file.toAbsolutePath().toString(),e);
+		if(isProjectFile(file, attr)){
+			ProjectDefinition projectDefinition = readFoundProject(file);
+			if(projectDefinitions != null && projectDefinition != null){
+				ProjectDefinitionCollector.putFirstPath(projectDefinitions, projectDefinition);
 			}
 		}
 		return FileVisitResult.CONTINUE;
 	}
 	
 	/**
-	 * Process the feature description XML.
-	 * @param dependenciesInCurrentProject A list of projectIds dependencies of the current project to be populated.
-	 * @param featurePath Location on disk of the feature XML
-	 * @throws IOException Error while reading the file.
+	 * Scan the tree with a fork-join pool, one task per directory.
+	 * The results are merged in the same order the sequential walk visits them. Of several projects with the same id
+	 * the one with the first path in alphabetical order is kept, as in the sequential walk, so the outcome is identical.
+	 * @param root Root path of the scan.
+	 * @param parallelism Parallelism level of the fork-join pool.
+	 * @throws IOException In case of file system read error.
 	 */
-	private void processFeatureDescriptor(ArrayList<String> dependenciesInCurrentProject, Path featurePath) throws IOException {
-		File featureXml = featurePath.toFile();
+	private void scanInParallel(Path root, int parallelism) throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
 		try {
-			// Read the XML.
-			Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(featureXml);
-			doc.getDocumentElement().normalize();
-			
-			//For each Import
-			NodeList imports = doc.getElementsByTagName("import");
-			
-			for(int i=0;i<imports.getLength();i++){
-				Element currentImport = (Element) imports.item(i);
-				
-				// Normal plug in dependency.
-				String pluginName = currentImport.getAttribute("plugin");
-				if(!pluginName.isEmpty()){
-					dependenciesInCurrentProject.add(pluginName);
-					//TODO: Notify user is log?
-					System.out.println("IMPORT PLUGIN: "+pluginName);
-					continue;
-				}
-				
-				// Feature dependency.
-				String featureName = currentImport.getAttribute("feature");
-				if(!featureName.isEmpty()){
-					dependenciesInCurrentProject.add(featureName);
-					//TODO: Notify user is log?
-					System.out.println("IMPORT FEATURE: "+featureName);
-					continue;
+			// A root that is a project is read like any other project directory.
+			Path projectFile = getStopProjectFile(root);
+			List<ProjectDefinition> found = pool.invoke(new DirectoryScanTask(projectFile == null ? root : projectFile));
+			for(ProjectDefinition projectDefinition:found){
+				ProjectDefinitionCollector.putFirstPath(projectDefinitions, projectDefinition);
+			}
+		} catch (RuntimeException e) {
+			// Unwrap the file system error thrown in one of the tasks.
+			for(Throwable cause = e; cause != null; cause = cause.getCause()){
+				if(cause instanceof IOException){
+					throw (IOException) cause;
 				}
 			}
-			
-			// For each plug in.
-			NodeList plugins = doc.getElementsByTagName("plugin");
-			for(int i=0;i<plugins.getLength();i++){
-				Element currentPlugin = (Element) plugins.item(i);
-				
-				// Plug ins of the feature.
-				String pluginName = currentPlugin.getAttribute("id");
-				if(!pluginName.isEmpty()){
-					dependenciesInCurrentProject.add(pluginName);
-					System.out.println("PLUGIN: "+pluginName);
+			throw e;
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Stop the scan if the sink canceled it.
+	 * @throws CancellationException If the scan was canceled.
+	 */
+	private void checkCanceled() {
+		if(sink != null && sink.isCanceled()){
+			throw new CancellationException("Scan of " + scanRoot + " canceled.");
+		}
+	}
+	
+	/**
+	 * Read a found project and pass it to the sink.
+	 * @param file Location on disk of the <code>.project</code> file.
+	 * @return ProjectDefinition of the project, or null if it was left out.
+	 * @throws IOException Error while reading the project files.
+	 */
+	private ProjectDefinition readFoundProject(Path file) throws IOException {
+		checkCanceled();
+		ProjectDefinition projectDefinition = readProjectDefinition(file);
+		if(sink != null && projectDefinition != null){
+			sink.projectFound(projectDefinition);
+		}
+		return projectDefinition;
+	}
+	
+	/**
+	 * Count a directory the scan lists.
+	 */
+	private void countVisitedDirectory() {
+		if(metricsListener != null){
+			metricsListener.counterIncremented(Counter.DIRECTORIES_VISITED, 1);
+		}
+	}
+	
+	/**
+	 * Return the start time of a measured phase.
+	 * @return Current time in nanoseconds, or 0 if nothing is measured.
+	 */
+	private long startPhase() {
+		return metricsListener == null ? 0 : System.nanoTime();
+	}
+	
+	/**
+	 * Notify the listener that a descriptor file was parsed and commit the flight recorder event of the parse.
+	 * @param phase Parse phase.
+	 * @param file Parsed file.
+	 * @param projectId Id of the project, null if it is not known.
+	 * @param startTime Start time of the phase returned by {@link #startPhase()}.
+	 * @param event Flight recorder event started before the parse, can be null.
+	 * @throws IOException Error while reading the size of the file.
+	 */
+	private void fileParsed(Phase phase, Path file, String projectId, long startTime, Object event) throws IOException {
+		FlightRecorderEvents.commitDescriptorParse(event, projectId, file);
+		if(metricsListener != null){
+			metricsListener.phaseCompleted(phase, file.toString(), System.nanoTime() - startTime);
+			metricsListener.counterIncremented(Counter.FILES_PARSED, 1);
+			metricsListener.counterIncremented(Counter.BYTES_READ, Files.size(file));
+		}
+	}
+	
+	/**
+	 * Check if the directory matches the pruning rules. Pruned directories are counted.
+	 * @param directory Directory below the scan root.
+	 * @return True if the scan should not descend into the directory.
+	 */
+	private boolean isPruned(Path directory) {
+		if(pruningRules != null && pruningRules.isIgnored(scanRoot.relativize(directory))){
+			skippedDirectories.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * When the scan stops at projects, return the project file of a project directory. The directory is counted as skipped.
+	 * @param directory Scan root or directory below it.
+	 * @return The <code>.project</code> file to read instead of descending into the directory, or null to descend normally.
+	 */
+	private Path getStopProjectFile(Path directory) {
+		if(pruningRules == null || !pruningRules.isStopAtProjects()){
+			return null;
+		}
+		Path projectFile = directory.resolve(FILENAME_PROJECT);
+		if(Files.isRegularFile(projectFile, LinkOption.NOFOLLOW_LINKS)){
+			skippedDirectories.incrementAndGet();
+			return projectFile;
+		}
+		return null;
+	}
+	
+	/**
+	 * Return the number of directories the scan did not descend into, because of the ignore rules or because they contain a project.
+	 * @return Number of skipped directories.
+	 */
+	public int getSkippedDirectoryCount() {
+		return skippedDirectories.get();
+	}
+	
+	/**
+	 * Check if the visited file is a project description.
+	 * @param file Visited file.
+	 * @param attr Attributes of the visited file.
+	 * @return True if the file is a <code>.project</code> file.
+	 */
+	private static boolean isProjectFile(Path file, BasicFileAttributes attr) {
+		return file.getFileName() != null && file.getFileName().endsWith(FILENAME_PROJECT) && attr.isRegularFile();
+	}
+	
+	/**
+	 * Read the project description, feature and manifest of a project.
+	 * @param file Location on disk of the <code>.project</code> file.
+	 * @return ProjectDefinition of the project, or null if it was left out because its feature is malformed.
+	 * @throws IOException Error while reading the project files.
+	 */
+	private ProjectDefinition readProjectDefinition(Path file) throws IOException {
+		String projectPath = file.toString();
+		Path featurePath = file.getParent().resolve(FILENAME_FEATURE);
+		Path manifestPath = file.getParent().resolve(FILENAME_MANIFEST);
+		
+		// Take the project from the index if none of its descriptors changed.
+		long[] stamps = null;
+		if(scanIndex != null){
+			stamps = ScanIndex.readStamps(file, featurePath, manifestPath);
+			ProjectDefinition indexedProject = scanIndex.get(projectPath, stamps);
+			if(indexedProject != null){
+				if(metricsListener != null){
+					metricsListener.counterIncremented(Counter.PROJECTS_SKIPPED, 1);
 				}
+				return indexedProject;
 			}
-			
-			// For each include.
-			NodeList includes = doc.getElementsByTagName("includes");
-			for(int i=0;i<includes.getLength();i++){
-				Element currentInclude = (Element) includes.item(i);
-				
-				//  Include dependency.
-				String includeName = currentInclude.getAttribute("id");
-				if(!includeName.isEmpty()){
-					dependenciesInCurrentProject.add(includeName);
-					System.out.println("INCLUDE: "+includeName);
+		}
+		
+		ArrayList<String> dependenciesInCurrentProject = new ArrayList<String>();
+		BitSet optionalDependencies = new BitSet();
+		ArrayList<String> exportedPackages = new ArrayList<String>();
+		ArrayList<String> importedPackages = new ArrayList<String>();
+		BitSet optionalImportedPackages = new BitSet();
+		
+		// Read project name.
+		long startTime = startPhase();
+		Object event = FlightRecorderEvents.begin(Type.DESCRIPTOR_PARSE);
+		String projectName = ProjectNameReader.readProjectName(file);
+		fileParsed(Phase.PROJECT_READ, file, projectName, startTime, event);
+		
+		// Read feature description if exists (if it's a feature).
+		if(Files.exists(featurePath)){
+			startTime = startPhase();
+			event = FlightRecorderEvents.begin(Type.DESCRIPTOR_PARSE);
+			try {
+				processFeatureDescriptor(dependenciesInCurrentProject,featurePath);
+			} catch (MalformedDescriptorException e) {
+				projectLeftOut(e);
+				return null;
+			}
+			fileParsed(Phase.FEATURE_PARSE, featurePath, projectName, startTime, event);
+		}
+		
+		// Read project manifest if exists.
+		if(Files.exists(manifestPath)){
+			startTime = startPhase();
+			event = FlightRecorderEvents.begin(Type.DESCRIPTOR_PARSE);
+			processPluginManifest(dependenciesInCurrentProject,optionalDependencies,exportedPackages,importedPackages,
+					optionalImportedPackages,manifestPath);
+			fileParsed(Phase.MANIFEST_PARSE, manifestPath, projectName, startTime, event);
+		}
+		
+		ProjectDefinition projectDefinition = new ProjectDefinition(projectName, projectPath, dependenciesInCurrentProject,
+				optionalDependencies, exportedPackages, importedPackages, optionalImportedPackages);
+		if(scanIndex != null){
+			scanIndex.put(stamps, projectDefinition);
+		}
+		return projectDefinition;
+	}
+	
+	/**
+	 * Leave out a project whose descriptor is malformed, so the rest of the tree is still loaded.
+	 * The project is counted as skipped and the error is kept in the {@link #getScanWarnings() scan warnings}.
+	 * @param e Parse error of the descriptor.
+	 */
+	private void projectLeftOut(MalformedDescriptorException e) {
+		scanWarnings.add(e.getMessage() + " " + e.getCause().getMessage());
+		if(metricsListener != null){
+			metricsListener.counterIncremented(Counter.PROJECTS_SKIPPED, 1);
+		}
+	}
+	
+	/**
+	 * Return the warnings of the last scan, e.g. the projects left out because a descriptor is malformed.
+	 * @return Copy of the warning messages.
+	 */
+	public List<String> getScanWarnings() {
+		synchronized(scanWarnings){
+			return new ArrayList<String>(scanWarnings);
+		}
+	}
+	
+	/**
+	 * Process the feature description XML in a single streaming pass.
+	 * @param dependenciesInCurrentProject A list of projectIds dependencies of the current project to be populated.
+	 * @param featurePath Location on disk of the feature XML
+	 * @throws IOException Error while reading the file.
+	 * @throws MalformedDescriptorException If the file is not well formed.
+	 */
+	static void processFeatureDescriptor(List<String> dependenciesInCurrentProject, Path featurePath) throws IOException {
+		List<String> imports = new ArrayList<String>();
+		List<String> plugins = new ArrayList<String>();
+		List<String> includes = new ArrayList<String>();
+		
+		try(InputStream in = Files.newInputStream(featurePath)){
+			XMLStreamReader reader = SecureXmlInputFactory.createReader(in);
+			try {
+				while(reader.hasNext()){
+					if(reader.next() != XMLStreamConstants.START_ELEMENT){
+						continue;
+					}
+					
+					String elementName = reader.getLocalName();
+					if("import".equals(elementName)){
+						// Normal plug in dependency or feature dependency.
+						String importName = reader.getAttributeValue(null, "plugin");
+						if(importName == null || importName.isEmpty()){
+							importName = reader.getAttributeValue(null, "feature");
+						}
+						if(importName != null && !importName.isEmpty()){
+							imports.add(importName);
+						}
+					}else if("plugin".equals(elementName)){
+						// Plug ins of the feature.
+						String pluginName = reader.getAttributeValue(null, "id");
+						if(pluginName != null && !pluginName.isEmpty()){
+							plugins.add(pluginName);
+						}
+					}else if("includes".equals(elementName)){
+						// Include dependency.
+						String includeName = reader.getAttributeValue(null, "id");
+						if(includeName != null && !includeName.isEmpty()){
+							includes.add(includeName);
+						}
+					}
 				}
+			} finally {
+				reader.close();
 			}
-			
-			
-		} catch (SAXException e) {
-			//TODO: Notify user or skip?
-			e.printStackTrace();
-		} catch (ParserConfigurationException e) {
-			//TODO: Notify user or skip?
-			e.printStackTrace();
+		} catch (XMLStreamException e) {
+			throw new MalformedDescriptorException("There was a problem while reading the feature description: "+featurePath.toAbsolutePath().toString(),e);
 		}
+		
+		// Keep the order: imports, plug ins, includes.
+		dependenciesInCurrentProject.addAll(imports);
+		dependenciesInCurrentProject.addAll(plugins);
+		dependenciesInCurrentProject.addAll(includes);
 	}
 
 	/**
@@ -170,23 +566,137 @@ public class FSProjectDefinitionProvider extends SimpleFileVisitor<Path> impleme
 	 * @throws IOException Possible exception in reading the file.
 	 * @throws FileNotFoundException If wrong path is supplied.
 	 */
-	private void processPluginManifest(ArrayList<String> dependenciesInCurrentProject, Path manifestPath) throws IOException, FileNotFoundException {
-		// Read the manifest and extract the dependencies in CSV format.
-		Manifest currentManifest = new Manifest(new FileInputStream(manifestPath.toString()));
-		Attributes attributes = currentManifest.getMainAttributes();
-		String dependenciesCSV = attributes.getValue(NAME_MANIFEST_DEPENDENCY);
-		
-		if(dependenciesCSV !=null && !dependenciesCSV.isEmpty()){
-			// Split and add the dependencies from the manifest.
-			for(String dependency:dependenciesCSV.split(",")){			
-				dependenciesInCurrentProject.add(dependency.split(";")[0]);
+	static void processPluginManifest(List<String> dependenciesInCurrentProject, Path manifestPath) throws IOException, FileNotFoundException {
+		processPluginManifest(dependenciesInCurrentProject, null, null, null, null, manifestPath);
+	}
+
+	/**
+	 * Process the plug-in MANIFEST file with its exported and imported packages.
+	 * Only the main section is read, up to the end of the last requested header.
+	 * @param dependenciesInCurrentProject A list of projectIds dependencies of the current project to be populated.
+	 * @param optionalDependencies Indexes of the optional dependencies in <code>dependenciesInCurrentProject</code> to be set. Can be null.
+	 * @param exportedPackages A list of the exported package names to be populated. If null, the packages are not read.
+	 * @param importedPackages A list of the imported package names to be populated. If null, the packages are not read.
+	 * @param optionalImportedPackages Indexes of the optional packages in <code>importedPackages</code> to be set. Can be null.
+	 * @param manifestPath Location on disk of the manifest.
+	 * @throws IOException Possible exception in reading the file.
+	 * @throws FileNotFoundException If wrong path is supplied.
+	 */
+	static void processPluginManifest(List<String> dependenciesInCurrentProject, BitSet optionalDependencies,
+			List<String> exportedPackages, List<String> importedPackages, BitSet optionalImportedPackages, Path manifestPath)
+			throws IOException, FileNotFoundException {
+		Map<String, String> headers = exportedPackages == null && importedPackages == null
+				? ManifestHeaderReader.readMainHeaders(manifestPath, NAME_MANIFEST_DEPENDENCY)
+				: ManifestHeaderReader.readMainHeaders(manifestPath, NAME_MANIFEST_DEPENDENCY, NAME_MANIFEST_EXPORT_PACKAGE,
+						NAME_MANIFEST_IMPORT_PACKAGE);
+		addClausePaths(dependenciesInCurrentProject, optionalDependencies, headers.get(NAME_MANIFEST_DEPENDENCY));
+		addClausePaths(exportedPackages, null, headers.get(NAME_MANIFEST_EXPORT_PACKAGE));
+		addClausePaths(importedPackages, optionalImportedPackages, headers.get(NAME_MANIFEST_IMPORT_PACKAGE));
+	}
+
+	/**
+	 * Add the paths of the header clauses to a list, i.e. the bundle ids or package names.
+	 * @param paths List to be populated. If null, nothing is done.
+	 * @param optionalPaths Indexes of the paths of optional clauses in <code>paths</code> to be set. Can be null.
+	 * @param header Value of the manifest header, can be null.
+	 */
+	private static void addClausePaths(List<String> paths, BitSet optionalPaths, String header) {
+		if(paths != null){
+			for(ManifestClause clause:ManifestHeaderReader.parseClauses(header)){
+				if(optionalPaths != null && clause.isOptional()){
+					optionalPaths.set(paths.size(), paths.size() + clause.getPaths().size());
+				}
+				paths.addAll(clause.getPaths());
 			}
 		}
 	}
 
 	@Override
 	public Map<String, ProjectDefinition> getProjectDefinitions() {
-		return projectDefinitions;
+		return projectDefinitions == null ? Collections.<String, ProjectDefinition>emptyMap() : projectDefinitions;
 	}
 	
+	/**
+	 * <code>DirectoryScanTask</code>
+	 * scans one directory and forks a sub task for every sub directory.
+	 * It returns the found projects in the order {@link Files#walkFileTree(Path, java.nio.file.FileVisitor) walkFileTree} would visit them,
+	 * or nothing if the provider does not keep the projects.
+	 */
+	private class DirectoryScanTask extends RecursiveTask<List<ProjectDefinition>> {
+		private static final long serialVersionUID = 1L;
+		private final Path directory;
+		
+		/**
+		 * Constructor
+		 * @param directory Directory to scan.
+		 */
+		DirectoryScanTask(Path directory) {
+			this.directory = directory;
+		}
+		
+		@Override
+		protected List<ProjectDefinition> compute() {
+			try {
+				BasicFileAttributes attr = Files.readAttributes(directory, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+				List<ProjectDefinition> found = new ArrayList<ProjectDefinition>();
+				if(!attr.isDirectory()){
+					if(isProjectFile(directory, attr)){
+						collect(found, readFoundProject(directory));
+					}
+					return found;
+				}
+				
+				// Fork the sub directories, keeping their position among the entries.
+				List<Object> entries = new ArrayList<Object>();
+				checkCanceled();
+				countVisitedDirectory();
+				Object event = FlightRecorderEvents.begin(Type.DIRECTORY_VISIT);
+				try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory)){
+					for(Path entry:stream){
+						BasicFileAttributes entryAttr = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+						if(entryAttr.isDirectory()){
+							if(isPruned(entry)){
+								continue;
+							}
+							Path projectFile = getStopProjectFile(entry);
+							if(projectFile != null){
+								entries.add(projectFile);
+								continue;
+							}
+							
+							DirectoryScanTask subTask = new DirectoryScanTask(entry);
+							subTask.fork();
+							entries.add(subTask);
+						}else if(isProjectFile(entry, entryAttr)){
+							entries.add(entry);
+						}
+					}
+				}
+				
+				// Read the projects and join the sub directories in visiting order.
+				for(Object entry:entries){
+					if(entry instanceof DirectoryScanTask){
+						found.addAll(((DirectoryScanTask) entry).join());
+					}else{
+						collect(found, readFoundProject((Path) entry));
+					}
+				}
+				FlightRecorderEvents.commitDirectoryVisit(event, directory);
+				return found;
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		
+		/**
+		 * Add a found project to the result, if the provider keeps the projects.
+		 * @param found Projects found so far.
+		 * @param projectDefinition Found project, null if it was left out.
+		 */
+		private void collect(List<ProjectDefinition> found, ProjectDefinition projectDefinition) {
+			if(projectDefinitions != null && projectDefinition != null){
+				found.add(projectDefinition);
+			}
+		}
+	}
 }
@@ -0,0 +1,26 @@
+package org.csstudio.util.importwizard.project.provider;
+
+import org.csstudio.util.importwizard.project.ProjectDefinition;
+
+
+/**
+ * <code>IProjectDefinitionSink</code>
+ * receives the {@link org.csstudio.util.importwizard.project.ProjectDefinition ProjectDefinition}s while a scan discovers them,
+ * and can cancel the scan.</br>
+ * A parallel scan calls the sink from several threads at once, in no particular order.
+ *
+ */
+public interface IProjectDefinitionSink {
+	/**
+	 * Called for every project the scan finds.
+	 * @param projectDefinition Found project.
+	 */
+	public void projectFound(ProjectDefinition projectDefinition);
+
+	/**
+	 * Checked regularly during the scan. Once it returns true the scan stops with a
+	 * {@link java.util.concurrent.CancellationException CancellationException}.
+	 * @return True to stop the scan.
+	 */
+	public boolean isCanceled();
+}
@@ -0,0 +1,23 @@
+package org.csstudio.util.importwizard.project.provider;
+
+import java.io.IOException;
+
+
+/**
+ * <code>IStreamingProjectsDefinitionProvider</code>
+ * specifies the methods of a {@link org.csstudio.util.importwizard.project.ProjectDefinition ProjectDefinition} provider
+ * that passes the projects on while it finds them, instead of returning them all at the end.
+ * Implementations: {@link org.csstudio.util.importwizard.project.provider.FSProjectDefinitionProvider FSProjectDefinitionProvider}
+ *
+ */
+public interface IStreamingProjectsDefinitionProvider {
+	/**
+	 * Find the available {@link org.csstudio.util.importwizard.project.ProjectDefinition ProjectDefinition}s and pass
+	 * every one of them to the sink as soon as it is found. The method returns when all of them were passed.
+	 *
+	 * @param sink Receives the found projects and can cancel the search.
+	 * @throws IOException Error while reading the projects.
+	 * @throws java.util.concurrent.CancellationException If the sink canceled the search.
+	 */
+	public void streamProjectDefinitions(IProjectDefinitionSink sink) throws IOException;
+}
@@ -0,0 +1,23 @@
+package org.csstudio.util.importwizard.project.provider;
+
+import java.io.IOException;
+
+
+/**
+ * <code>MalformedDescriptorException</code>
+ * is thrown when a project descriptor can be read but not parsed. Unlike the other read errors it does not stop
+ * the scan, the project is left out.
+ *
+ */
+final class MalformedDescriptorException extends IOException {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor
+	 * @param message Description of the error.
+	 * @param cause Parse error.
+	 */
+	MalformedDescriptorException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
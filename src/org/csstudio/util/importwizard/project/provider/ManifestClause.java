@@ -0,0 +1,125 @@
+package org.csstudio.util.importwizard.project.provider;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * <code>ManifestClause</code>
+ * is one clause of an OSGi manifest header, e.g. <code>org.eclipse.ui;bundle-version="[3.6.0,4.0.0)";resolution:=optional</code>
+ * of <code>Require-Bundle</code>.</br>
+ * A clause has one or more paths (bundle ids or package names) followed by attributes (<code>name=value</code>)
+ * and directives (<code>name:=value</code>). Quoted values are stored without the quotes.
+ *
+ */
+public class ManifestClause {
+	/** Directive telling if a required bundle or imported package must be resolved. */
+	public static final String DIRECTIVE_RESOLUTION = "resolution";
+	/** Value of the {@link #DIRECTIVE_RESOLUTION resolution} directive of an optional dependency. */
+	public static final String RESOLUTION_OPTIONAL = "optional";
+	/** Directive telling if a required bundle is exported again by the requiring bundle. */
+	public static final String DIRECTIVE_VISIBILITY = "visibility";
+	/** Value of the {@link #DIRECTIVE_VISIBILITY visibility} directive of a reexported bundle. */
+	public static final String VISIBILITY_REEXPORT = "reexport";
+
+	private final List<String> paths;
+	private final Map<String, String> attributes;
+	private final Map<String, String> directives;
+
+	/**
+	 * Constructor
+	 * @param paths Paths of the clause, at least one.
+	 * @param attributes Attributes of the clause, key=name, value=value. Can be null.
+	 * @param directives Directives of the clause, key=name, value=value. Can be null.
+	 */
+	ManifestClause(List<String> paths, Map<String, String> attributes, Map<String, String> directives) {
+		this.paths = Collections.unmodifiableList(paths);
+		this.attributes = attributes == null ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(attributes);
+		this.directives = directives == null ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(directives);
+	}
+
+	/**
+	 * Return the first path of the clause, e.g. the bundle id of a <code>Require-Bundle</code> clause.
+	 * @return First path.
+	 */
+	public String getPath() {
+		return paths.get(0);
+	}
+
+	/**
+	 * Return all the paths of the clause. Package headers can list several packages sharing the same parameters.
+	 * @return Unmodifiable list of the paths.
+	 */
+	public List<String> getPaths() {
+		return paths;
+	}
+
+	/**
+	 * Return the value of an attribute.
+	 * @param name Name of the attribute, e.g. <code>bundle-version</code>.
+	 * @return Value of the attribute or null if the clause does not have it.
+	 */
+	public String getAttribute(String name) {
+		return attributes.get(name);
+	}
+
+	/**
+	 * Return the value of a directive.
+	 * @param name Name of the directive, e.g. {@link #DIRECTIVE_RESOLUTION}.
+	 * @return Value of the directive or null if the clause does not have it.
+	 */
+	public String getDirective(String name) {
+		return directives.get(name);
+	}
+
+	/**
+	 * Return all the attributes of the clause.
+	 * @return Unmodifiable map, key=name, value=value.
+	 */
+	public Map<String, String> getAttributes() {
+		return attributes;
+	}
+
+	/**
+	 * Return all the directives of the clause.
+	 * @return Unmodifiable map, key=name, value=value.
+	 */
+	public Map<String, String> getDirectives() {
+		return directives;
+	}
+
+	/**
+	 * Check if the dependency of the clause is optional.
+	 * @return True if the clause has <code>resolution:=optional</code>.
+	 */
+	public boolean isOptional() {
+		return RESOLUTION_OPTIONAL.equals(directives.get(DIRECTIVE_RESOLUTION));
+	}
+
+	/**
+	 * Check if the required bundle of the clause is reexported.
+	 * @return True if the clause has <code>visibility:=reexport</code>.
+	 */
+	public boolean isReexported() {
+		return VISIBILITY_REEXPORT.equals(directives.get(DIRECTIVE_VISIBILITY));
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder clause = new StringBuilder();
+		for(String path:paths){
+			if(clause.length() > 0){
+				clause.append(';');
+			}
+			clause.append(path);
+		}
+		for(Map.Entry<String, String> attribute:attributes.entrySet()){
+			clause.append(';').append(attribute.getKey()).append("=\"").append(attribute.getValue()).append('"');
+		}
+		for(Map.Entry<String, String> directive:directives.entrySet()){
+			clause.append(';').append(directive.getKey()).append(":=\"").append(directive.getValue()).append('"');
+		}
+		return clause.toString();
+	}
+}
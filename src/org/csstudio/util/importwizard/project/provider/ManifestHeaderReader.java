@@ -0,0 +1,288 @@
+package org.csstudio.util.importwizard.project.provider;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * <code>ManifestHeaderReader</code>
+ * reads selected headers of the main section of a <code>MANIFEST.MF</code> and splits OSGi headers into
+ * {@link org.csstudio.util.importwizard.project.provider.ManifestClause ManifestClause}s.</br>
+ * Unlike {@link java.util.jar.Manifest} it keeps only the requested headers and stops reading as soon as it has all of
+ * them or the main section ends. Continuation lines are joined, quoted values may contain <code>,</code>, <code>;</code>
+ * and <code>=</code>, e.g. version ranges like <code>bundle-version="[3.0,4.0)"</code>.
+ *
+ */
+final class ManifestHeaderReader {
+	private static final int BUFFER_SIZE = 4096;
+
+	private ManifestHeaderReader() {
+	}
+
+	/**
+	 * Read headers of the main section of a manifest. Header names are not case sensitive.
+	 * @param manifestPath Location on disk of the manifest.
+	 * @param headerNames Names of the headers to read.
+	 * @return Values of the found headers, key=header name as requested, value=header value with the continuation lines joined.
+	 * @throws IOException Error while reading the file.
+	 */
+	static Map<String, String> readMainHeaders(Path manifestPath, String... headerNames) throws IOException {
+		Map<String, String> headers = new HashMap<String, String>();
+		try(Reader in = new InputStreamReader(Files.newInputStream(manifestPath), StandardCharsets.UTF_8)){
+			LineReader reader = new LineReader(in);
+			StringBuilder line = new StringBuilder(128);
+			StringBuilder value = null;
+			int header = -1;
+			while(reader.readLine(line) && line.length() > 0){
+				if(line.charAt(0) == ' '){
+					// Continuation of the previous header.
+					if(value != null){
+						value.append(line, 1, line.length());
+					}
+					continue;
+				}
+
+				if(value != null){
+					headers.put(headerNames[header], value.toString());
+					value = null;
+					if(headers.size() == headerNames.length){
+						return headers;
+					}
+				}
+				header = matchHeader(line, headerNames);
+				if(header >= 0 && !headers.containsKey(headerNames[header])){
+					int start = headerNames[header].length() + 1;
+					if(start < line.length() && line.charAt(start) == ' '){
+						start++;
+					}
+					value = new StringBuilder(line.length() - start + 64).append(line, start, line.length());
+				}
+			}
+			if(value != null){
+				headers.put(headerNames[header], value.toString());
+			}
+		}
+		return headers;
+	}
+
+	/**
+	 * Find the requested header the line starts.
+	 * @param line Header line.
+	 * @param headerNames Names of the requested headers.
+	 * @return Index of the header name or -1 if the line starts another header.
+	 */
+	private static int matchHeader(StringBuilder line, String[] headerNames) {
+		for(int i=0;i<headerNames.length;i++){
+			String name = headerNames[i];
+			if(line.length() > name.length() && line.charAt(name.length()) == ':'
+					&& line.substring(0, name.length()).equalsIgnoreCase(name)){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Split an OSGi header into its clauses. Clauses are separated by <code>,</code>, the paths and parameters of a clause
+	 * by <code>;</code>. Clauses without a path are skipped.
+	 * @param header Value of the header, can be null.
+	 * @return Clauses of the header, empty if the header is null or empty.
+	 */
+	static List<ManifestClause> parseClauses(String header) {
+		if(header == null || header.isEmpty()){
+			return Collections.emptyList();
+		}
+		List<ManifestClause> clauses = new ArrayList<ManifestClause>();
+		ClauseParser parser = new ClauseParser(header);
+		while(!parser.isDone()){
+			ManifestClause clause = parser.parseClause();
+			if(clause != null){
+				clauses.add(clause);
+			}
+		}
+		return clauses;
+	}
+
+	/**
+	 * <code>ClauseParser</code>
+	 * walks over a header value once, creating strings only for the paths, names and values it returns.
+	 */
+	private static class ClauseParser {
+		private final String header;
+		private int position = 0;
+
+		/**
+		 * Constructor
+		 * @param header Value of the header.
+		 */
+		ClauseParser(String header) {
+			this.header = header;
+		}
+
+		/**
+		 * Check if the whole header was parsed.
+		 * @return True if there are no more clauses.
+		 */
+		boolean isDone() {
+			return position >= header.length();
+		}
+
+		/**
+		 * Parse the next clause and the <code>,</code> after it.
+		 * @return The clause, or null if it has no path.
+		 */
+		ManifestClause parseClause() {
+			List<String> paths = new ArrayList<String>(1);
+			Map<String, String> attributes = null;
+			Map<String, String> directives = null;
+			while(!isDone()){
+				int start = position;
+				char c = 0;
+				while(!isDone()){
+					c = header.charAt(position);
+					if(c == ';' || c == ',' || c == '=' || (c == ':' && position + 1 < header.length() && header.charAt(position + 1) == '=')){
+						break;
+					}
+					position++;
+				}
+				String name = header.substring(start, position).trim();
+				if(isDone() || c == ';' || c == ','){
+					if(!name.isEmpty()){
+						paths.add(name);
+					}
+				}else if(c == '='){
+					position++;
+					if(attributes == null){
+						attributes = new LinkedHashMap<String, String>();
+					}
+					attributes.put(name, parseArgument());
+				}else{
+					position += 2;
+					if(directives == null){
+						directives = new LinkedHashMap<String, String>();
+					}
+					directives.put(name, parseArgument());
+				}
+
+				// Skip anything left up to the next separator.
+				while(!isDone() && header.charAt(position) != ';' && header.charAt(position) != ','){
+					position++;
+				}
+				if(!isDone() && header.charAt(position++) == ','){
+					break;
+				}
+			}
+			return paths.isEmpty() ? null : new ManifestClause(paths, attributes, directives);
+		}
+
+		/**
+		 * Parse the value of an attribute or directive, quoted or not.
+		 * @return The value without the quotes.
+		 */
+		private String parseArgument() {
+			while(!isDone() && Character.isWhitespace(header.charAt(position))){
+				position++;
+			}
+			if(isDone() || header.charAt(position) != '"'){
+				int start = position;
+				while(!isDone() && header.charAt(position) != ';' && header.charAt(position) != ','){
+					position++;
+				}
+				return header.substring(start, position).trim();
+			}
+
+			int start = ++position;
+			StringBuilder escaped = null;
+			while(!isDone()){
+				char c = header.charAt(position);
+				if(c == '"'){
+					break;
+				}
+				if(c == '\\' && position + 1 < header.length()){
+					if(escaped == null){
+						escaped = new StringBuilder().append(header, start, position);
+					}
+					c = header.charAt(++position);
+				}
+				if(escaped != null){
+					escaped.append(c);
+				}
+				position++;
+			}
+			String value = escaped == null ? header.substring(start, position) : escaped.toString();
+			if(!isDone()){
+				position++;
+			}
+			return value;
+		}
+	}
+
+	/**
+	 * <code>LineReader</code>
+	 * reads the lines of a manifest into a reused buffer. Lines end with CR LF, LF or CR.
+	 */
+	private static class LineReader {
+		private final Reader in;
+		private final char[] buffer = new char[BUFFER_SIZE];
+		private int position = 0;
+		private int limit = 0;
+		private boolean skipLineFeed = false;
+
+		/**
+		 * Constructor
+		 * @param in Manifest text.
+		 */
+		LineReader(Reader in) {
+			this.in = in;
+		}
+
+		/**
+		 * Read the next line.
+		 * @param line Buffer the line is read into, without the line end. It is cleared first.
+		 * @return False at the end of the file when no more characters were read.
+		 * @throws IOException Error while reading.
+		 */
+		boolean readLine(StringBuilder line) throws IOException {
+			line.setLength(0);
+			boolean read = false;
+			while(true){
+				if(position >= limit){
+					limit = in.read(buffer, 0, buffer.length);
+					position = 0;
+					if(limit <= 0){
+						limit = 0;
+						return read;
+					}
+				}
+				if(skipLineFeed){
+					skipLineFeed = false;
+					if(buffer[position] == '\n'){
+						position++;
+						continue;
+					}
+				}
+
+				read = true;
+				int start = position;
+				while(position < limit && buffer[position] != '\n' && buffer[position] != '\r'){
+					position++;
+				}
+				line.append(buffer, start, position - start);
+				if(position < limit){
+					skipLineFeed = buffer[position++] == '\r';
+					return true;
+				}
+			}
+		}
+	}
+}
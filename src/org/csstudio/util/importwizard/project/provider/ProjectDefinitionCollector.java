@@ -0,0 +1,72 @@
+package org.csstudio.util.importwizard.project.provider;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.csstudio.util.importwizard.project.ProjectDefinition;
+
+
+/**
+ * <code>ProjectDefinitionCollector</code>
+ * is a sink that collects the streamed {@link org.csstudio.util.importwizard.project.ProjectDefinition ProjectDefinition}s
+ * by projectId and passes them on to another sink.</br>
+ * If several projects have the same id, the one with the first path in alphabetical order is kept, so the result does not
+ * depend on the order a parallel scan finds them in. Only a project that is kept at the time it is found is passed on;
+ * a duplicate with a later path never reaches the other sink. The collector can be used by several scans, e.g. of
+ * different roots.
+ *
+ */
+public class ProjectDefinitionCollector implements IProjectDefinitionSink {
+	private final Map<String, ProjectDefinition> projectDefinitions = new HashMap<String, ProjectDefinition>();
+	private final IProjectDefinitionSink sink;
+
+	/**
+	 * Constructs the collector.
+	 * @param sink Sink to pass the projects on to, it also decides about the cancellation. Can be null.
+	 */
+	public ProjectDefinitionCollector(IProjectDefinitionSink sink) {
+		this.sink = sink;
+	}
+
+	@Override
+	public void projectFound(ProjectDefinition projectDefinition) {
+		boolean kept;
+		synchronized(projectDefinitions){
+			kept = putFirstPath(projectDefinitions, projectDefinition);
+		}
+		if(kept && sink != null){
+			sink.projectFound(projectDefinition);
+		}
+	}
+
+	/**
+	 * Put the project to the map unless the map already holds a project with the same id and a path
+	 * that comes first in alphabetical order.
+	 * @param projectDefinitions Map key=projectId, value=ProjectDefinition.
+	 * @param projectDefinition Found project.
+	 * @return true if the project was put to the map.
+	 */
+	static boolean putFirstPath(Map<String, ProjectDefinition> projectDefinitions, ProjectDefinition projectDefinition) {
+		ProjectDefinition previous = projectDefinitions.get(projectDefinition.getProjectId());
+		if(previous != null && previous.getProjectPath().compareTo(projectDefinition.getProjectPath()) <= 0){
+			return false;
+		}
+		projectDefinitions.put(projectDefinition.getProjectId(), projectDefinition);
+		return true;
+	}
+
+	@Override
+	public boolean isCanceled() {
+		return sink != null && sink.isCanceled();
+	}
+
+	/**
+	 * Return the collected projects. Call it when the scans are done.
+	 * @return Map key=projectId, value=ProjectDefinition.
+	 */
+	public Map<String, ProjectDefinition> getProjectDefinitions() {
+		synchronized(projectDefinitions){
+			return projectDefinitions;
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package org.csstudio.util.importwizard.project.provider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+
+/**
+ * <code>ProjectNameReader</code>
+ * reads only the project name from a <code>.project</code> file.</br>
+ * The parse stops at the <code>name</code> element, natures, builders and linked resources are never read.
+ * The full description is loaded by the workspace when the project is imported.
+ *
+ */
+final class ProjectNameReader {
+	private static final String ELEMENT_ROOT = "projectDescription";
+	private static final String ELEMENT_NAME = "name";
+
+	private ProjectNameReader() {
+	}
+
+	/**
+	 * Read the project name.
+	 * @param projectFile Location on disk of the <code>.project</code> file.
+	 * @return Name of the project.
+	 * @throws IOException Error while reading the file or if the file has no project name.
+	 */
+	static String readProjectName(Path projectFile) throws IOException {
+		try(InputStream in = Files.newInputStream(projectFile)){
+			XMLStreamReader reader = SecureXmlInputFactory.createReader(in);
+			try {
+				int depth = 0;
+				while(reader.hasNext()){
+					int event = reader.next();
+					if(event == XMLStreamConstants.END_ELEMENT){
+						depth--;
+					}else if(event == XMLStreamConstants.START_ELEMENT){
+						depth++;
+						
+						// The name is a direct child of the root element.
+						if(depth == 1 && !ELEMENT_ROOT.equals(reader.getLocalName())){
+							break;
+						}
+						if(depth == 2 && ELEMENT_NAME.equals(reader.getLocalName())){
+							String name = reader.getElementText().trim();
+							if(!name.isEmpty()){
+								return name;
+							}
+							break;
+						}
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException("There was a problem while reading the project description: "+projectFile.toAbsolutePath().toString(),e);
+		}
+		throw new IOException("The project description has no project name: "+projectFile.toAbsolutePath().toString());
+	}
+}
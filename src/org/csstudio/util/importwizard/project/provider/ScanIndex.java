@@ -0,0 +1,243 @@
+package org.csstudio.util.importwizard.project.provider;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.csstudio.util.importwizard.project.ProjectDefinition;
+
+
+/**
+ * <code>ScanIndex</code>
+ * is a persistent cache of the {@link org.csstudio.util.importwizard.project.ProjectDefinition ProjectDefinition}s found under one root path.</br>
+ * Every entry remembers the modification time and size of the project's <code>.project</code>, <code>feature.xml</code> and
+ * <code>META-INF/MANIFEST.MF</code>, so a rescan only parses the projects whose descriptors changed.
+ *
+ */
+public class ScanIndex {
+	private static final int FILE_MAGIC = 0x43535349;
+	private static final int FILE_VERSION = 4;
+
+	private final Path indexFile;
+	private final String rootPath;
+	private final Map<String, Entry> loadedEntries;
+	private final Map<String, Entry> currentEntries = new ConcurrentHashMap<String, Entry>();
+
+	/**
+	 * Open the index of a root path. A missing, unreadable or outdated index file is treated as an empty index.
+	 * @param indexFile Location of the index file.
+	 * @param rootPath Root path of the scan the index belongs to.
+	 */
+	public ScanIndex(Path indexFile, String rootPath) {
+		if(indexFile == null || rootPath == null){
+			throw new IllegalArgumentException("Index file and root path cannot be null.");
+		}
+		this.indexFile = indexFile;
+		this.rootPath = rootPath;
+		this.loadedEntries = load();
+	}
+
+	/**
+	 * Read the descriptor stamps of a project.
+	 * @param projectFile Location on disk of the <code>.project</code> file.
+	 * @param featurePath Location on disk of the feature XML.
+	 * @param manifestPath Location on disk of the manifest.
+	 * @return Modification time and size of the three descriptors, -1 for the missing ones.
+	 * @throws IOException Error while reading the file attributes.
+	 */
+	static long[] readStamps(Path projectFile, Path featurePath, Path manifestPath) throws IOException {
+		long[] stamps = new long[6];
+		readStamp(projectFile, stamps, 0);
+		readStamp(featurePath, stamps, 2);
+		readStamp(manifestPath, stamps, 4);
+		return stamps;
+	}
+
+	/**
+	 * Read modification time and size of a single descriptor.
+	 * @param file Location on disk of the descriptor.
+	 * @param stamps Array to store the stamp into.
+	 * @param offset Position of the stamp in the array.
+	 * @throws IOException Error while reading the file attributes.
+	 */
+	private static void readStamp(Path file, long[] stamps, int offset) throws IOException {
+		try {
+			BasicFileAttributes attr = Files.readAttributes(file, BasicFileAttributes.class);
+			stamps[offset] = attr.lastModifiedTime().toMillis();
+			stamps[offset + 1] = attr.size();
+		} catch (NoSuchFileException e) {
+			stamps[offset] = -1;
+			stamps[offset + 1] = -1;
+		}
+	}
+
+	/**
+	 * Return the indexed project if its descriptors did not change since it was indexed.
+	 * A hit is kept for the next {@link #save()}.
+	 * @param projectPath Path of the <code>.project</code> file.
+	 * @param stamps Current descriptor stamps, see {@link #readStamps(Path, Path, Path)}.
+	 * @return The indexed ProjectDefinition or null, if the project needs to be parsed again.
+	 */
+	ProjectDefinition get(String projectPath, long[] stamps) {
+		Entry entry = loadedEntries.get(projectPath);
+		if(entry == null || !Arrays.equals(entry.stamps, stamps)){
+			return null;
+		}
+		currentEntries.put(projectPath, entry);
+		return entry.projectDefinition;
+	}
+
+	/**
+	 * Add a freshly parsed project to the index.
+	 * @param stamps Descriptor stamps read before the project was parsed.
+	 * @param projectDefinition Parsed project.
+	 */
+	void put(long[] stamps, ProjectDefinition projectDefinition) {
+		currentEntries.put(projectDefinition.getProjectPath(), new Entry(stamps, projectDefinition));
+	}
+
+	/**
+	 * Write the projects found in the last scan to the index file. Projects that were not found anymore are dropped.
+	 * @throws IOException Error while writing the file.
+	 */
+	public void save() throws IOException {
+		Files.createDirectories(indexFile.getParent());
+		Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))){
+			out.writeInt(FILE_MAGIC);
+			out.writeInt(FILE_VERSION);
+			out.writeUTF(rootPath);
+			out.writeInt(currentEntries.size());
+			for(Entry entry:currentEntries.values()){
+				ProjectDefinition projectDefinition = entry.projectDefinition;
+				out.writeUTF(projectDefinition.getProjectPath());
+				out.writeUTF(projectDefinition.getProjectId());
+				for(long stamp:entry.stamps){
+					out.writeLong(stamp);
+				}
+				List<String> dependencies = projectDefinition.getProjectDependencies();
+				writeNames(out, dependencies);
+				for(int i=0;i<dependencies.size();i++){
+					out.writeBoolean(projectDefinition.isOptionalDependency(i));
+				}
+				writeNames(out, projectDefinition.getExportedPackages());
+				List<String> importedPackages = projectDefinition.getImportedPackages();
+				writeNames(out, importedPackages);
+				for(int i=0;i<importedPackages.size();i++){
+					out.writeBoolean(projectDefinition.isOptionalImportedPackage(i));
+				}
+			}
+		}
+		Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Read the index file.
+	 * @return Map key=project path, value=indexed entry. Empty if there is no valid index.
+	 */
+	private Map<String, Entry> load() {
+		Map<String, Entry> entries = new HashMap<String, Entry>();
+		if(!Files.isRegularFile(indexFile)){
+			return entries;
+		}
+
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))){
+			if(in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION || !rootPath.equals(in.readUTF())){
+				return entries;
+			}
+			int entryCount = in.readInt();
+			for(int i=0;i<entryCount;i++){
+				String projectPath = in.readUTF();
+				String projectId = in.readUTF();
+				long[] stamps = new long[6];
+				for(int j=0;j<stamps.length;j++){
+					stamps[j] = in.readLong();
+				}
+				List<String> dependencies = readNames(in);
+				BitSet optionalDependencies = readFlags(in, dependencies.size());
+				List<String> exportedPackages = readNames(in);
+				List<String> importedPackages = readNames(in);
+				BitSet optionalImportedPackages = readFlags(in, importedPackages.size());
+				entries.put(projectPath, new Entry(stamps, new ProjectDefinition(projectId, projectPath, dependencies,
+						optionalDependencies, exportedPackages, importedPackages, optionalImportedPackages)));
+			}
+		} catch (IOException e) {
+			// A broken index is the same as no index, the projects get parsed again.
+			entries.clear();
+		}
+		return entries;
+	}
+
+	/**
+	 * Write a list of projectIds or package names, preceded by its size.
+	 * @param out Index file.
+	 * @param names Names to write.
+	 * @throws IOException Error while writing the file.
+	 */
+	private static void writeNames(DataOutputStream out, List<String> names) throws IOException {
+		out.writeInt(names.size());
+		for(String name:names){
+			out.writeUTF(name);
+		}
+	}
+
+	/**
+	 * Read a list written by {@link #writeNames(DataOutputStream, List)}.
+	 * @param in Index file.
+	 * @return Read names.
+	 * @throws IOException Error while reading the file.
+	 */
+	private static List<String> readNames(DataInputStream in) throws IOException {
+		int nameCount = in.readInt();
+		List<String> names = new ArrayList<String>(nameCount);
+		for(int i=0;i<nameCount;i++){
+			names.add(in.readUTF());
+		}
+		return names;
+	}
+
+	/**
+	 * Read the optional flags of a list of names, one boolean per name.
+	 * @param in Index file.
+	 * @param count Number of names.
+	 * @return Indexes of the optional names.
+	 * @throws IOException Error while reading the file.
+	 */
+	private static BitSet readFlags(DataInputStream in, int count) throws IOException {
+		BitSet flags = new BitSet(count);
+		for(int i=0;i<count;i++){
+			if(in.readBoolean()){
+				flags.set(i);
+			}
+		}
+		return flags;
+	}
+
+	/**
+	 * Indexed project with the stamps of its descriptors.
+	 */
+	private static class Entry {
+		private final long[] stamps;
+		private final ProjectDefinition projectDefinition;
+
+		Entry(long[] stamps, ProjectDefinition projectDefinition) {
+			this.stamps = stamps;
+			this.projectDefinition = projectDefinition;
+		}
+	}
+}
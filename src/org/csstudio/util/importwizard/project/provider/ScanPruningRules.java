@@ -0,0 +1,112 @@
+package org.csstudio.util.importwizard.project.provider;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * <code>ScanPruningRules</code>
+ * decides which directories the {@link org.csstudio.util.importwizard.project.provider.FSProjectDefinitionProvider FSProjectDefinitionProvider}
+ * does not descend into.</br>
+ * A rule is a glob. Rules without a <code>/</code> are matched against the directory name, the others against the directory
+ * path relative to the scanned root (e.g. <code>applications/*&#47;build</code>).
+ *
+ */
+public class ScanPruningRules {
+	/** Version control, build output and workspace metadata folders, which never contain projects to import. */
+	public static final List<String> DEFAULT_IGNORE_RULES = Collections.unmodifiableList(Arrays.asList(
+			".git", ".svn", ".hg", ".bzr", "CVS", ".metadata", "target", "bin", "node_modules"));
+
+	private final List<String> ignoreRules = new ArrayList<String>();
+	private final List<PathMatcher> nameMatchers = new ArrayList<PathMatcher>();
+	private final List<PathMatcher> pathMatchers = new ArrayList<PathMatcher>();
+	private boolean stopAtProjects = false;
+
+	/**
+	 * Constructs the rules with the {@link #DEFAULT_IGNORE_RULES default ignore rules}.
+	 */
+	public ScanPruningRules() {
+		this(true);
+	}
+
+	/**
+	 * Constructor
+	 * @param useDefaultRules True to start with the {@link #DEFAULT_IGNORE_RULES default ignore rules}, false to start with no rules.
+	 */
+	public ScanPruningRules(boolean useDefaultRules) {
+		if(useDefaultRules){
+			for(String rule:DEFAULT_IGNORE_RULES){
+				addIgnoreRule(rule);
+			}
+		}
+	}
+
+	/**
+	 * Add a glob rule for directories that should not be scanned.
+	 * @param rule Glob matched against the directory name, or against the relative path if it contains a <code>/</code>.
+	 */
+	public void addIgnoreRule(String rule) {
+		if(rule == null || rule.trim().isEmpty()){
+			throw new IllegalArgumentException("Ignore rule cannot be null or empty.");
+		}
+		rule = rule.trim();
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + rule);
+		if(rule.indexOf('/') >= 0){
+			pathMatchers.add(matcher);
+		}else{
+			nameMatchers.add(matcher);
+		}
+		ignoreRules.add(rule);
+	}
+
+	/**
+	 * Return the active ignore rules.
+	 * @return List of glob rules.
+	 */
+	public List<String> getIgnoreRules() {
+		return Collections.unmodifiableList(ignoreRules);
+	}
+
+	/**
+	 * Stop descending once a directory with a <code>.project</code> file is found. Nested projects are not found in this mode.
+	 * @param stopAtProjects True to skip the sub directories of projects.
+	 */
+	public void setStopAtProjects(boolean stopAtProjects) {
+		this.stopAtProjects = stopAtProjects;
+	}
+
+	/**
+	 * Check if the sub directories of projects are skipped.
+	 * @return True if the scan stops at the first <code>.project</code> on every path.
+	 */
+	public boolean isStopAtProjects() {
+		return stopAtProjects;
+	}
+
+	/**
+	 * Check if a directory matches any of the ignore rules.
+	 * @param relativeDirectory Directory path relative to the scanned root.
+	 * @return True if the directory should not be scanned.
+	 */
+	boolean isIgnored(Path relativeDirectory) {
+		Path directoryName = relativeDirectory.getFileName();
+		if(directoryName != null){
+			for(PathMatcher matcher:nameMatchers){
+				if(matcher.matches(directoryName)){
+					return true;
+				}
+			}
+		}
+		for(PathMatcher matcher:pathMatchers){
+			if(matcher.matches(relativeDirectory)){
+				return true;
+			}
+		}
+		return false;
+	}
+}
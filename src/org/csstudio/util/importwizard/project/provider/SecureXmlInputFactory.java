@@ -0,0 +1,41 @@
+package org.csstudio.util.importwizard.project.provider;
+
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+
+/**
+ * <code>SecureXmlInputFactory</code>
+ * hands out streaming XML readers for the project descriptors.</br>
+ * The factory is created once per scanning thread and does not resolve DTDs or external entities.
+ *
+ */
+final class SecureXmlInputFactory {
+	private static final ThreadLocal<XMLInputFactory> FACTORY = new ThreadLocal<XMLInputFactory>() {
+		@Override
+		protected XMLInputFactory initialValue() {
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+			factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+			factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+			factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+			return factory;
+		}
+	};
+
+	private SecureXmlInputFactory() {
+	}
+
+	/**
+	 * Create a streaming reader over the stream. The caller closes both the reader and the stream.
+	 * @param in XML document stream.
+	 * @return Streaming XML reader.
+	 * @throws XMLStreamException If the reader cannot be created.
+	 */
+	static XMLStreamReader createReader(InputStream in) throws XMLStreamException {
+		return FACTORY.get().createXMLStreamReader(in);
+	}
+}
@@ -1,15 +1,43 @@
 package org.csstudio.util.importwizard.wizard;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
 
+import org.csstudio.util.importwizard.project.DependencyGraph;
 import org.csstudio.util.importwizard.project.ProjectDefinition;
+import org.csstudio.util.importwizard.project.importer.ClosureEngine;
 import org.csstudio.util.importwizard.project.importer.IImportMonitor;
+import org.csstudio.util.importwizard.project.importer.ImportPlan;
+import org.csstudio.util.importwizard.project.importer.OptionalDependencyMode;
 import org.csstudio.util.importwizard.project.importer.ProjectImporter;
+import org.csstudio.util.importwizard.project.importer.TargetPlatformBundles;
+import org.csstudio.util.importwizard.project.metrics.IMetricsListener.Phase;
+import org.csstudio.util.importwizard.project.metrics.ImportMetrics;
 import org.csstudio.util.importwizard.project.provider.FSProjectDefinitionProvider;
+import org.csstudio.util.importwizard.project.provider.IProjectDefinitionSink;
+import org.csstudio.util.importwizard.project.provider.ProjectDefinitionCollector;
+import org.csstudio.util.importwizard.project.provider.ScanIndex;
+import org.csstudio.util.importwizard.project.provider.ScanPruningRules;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.FrameworkUtil;
 
 
 /**
@@ -22,9 +50,26 @@ import org.csstudio.util.importwizard.project.provider.FSProjectDefinitionProvid
  */
 public class CSSImportPresenter {
 
-	private List<ProjectDefinition> selectedProjects = new ArrayList<ProjectDefinition>();
-	private List<ProjectDefinition> allProjectsDefinition = new ArrayList<ProjectDefinition>();
+	private final Set<ProjectDefinition> selectedProjects = Collections.newSetFromMap(new IdentityHashMap<ProjectDefinition, Boolean>());
+	private volatile LoadedProjects loadedProjects = new LoadedProjects(Collections.<String, ProjectDefinition>emptyMap(), 0);
+	private final ClosureEngine[] closureEngines = new ClosureEngine[OptionalDependencyMode.values().length * 2];
+	// Engines of the previews, used by one background job at a time.
+	private final ClosureEngine[] previewClosureEngines = new ClosureEngine[OptionalDependencyMode.values().length * 2];
+	// Live closure of the selection: how many selected projects need each node, for the engine the counts were built with.
+	private ClosureEngine selectionClosureEngine;
+	private int[] selectionReferenceCounts = new int[0];
+	private int selectionClosureSize = 0;
 	private boolean importTestProjects = false;
+	private boolean skipTargetPlatformBundles = false;
+	private OptionalDependencyMode optionalDependencyMode = OptionalDependencyMode.INCLUDE;
+	private volatile TargetPlatformBundles targetPlatformBundles;
+	private volatile boolean targetPlatformRead = false;
+	private boolean batchImport = false;
+	private int importParallelism = 1;
+	private boolean suspendAutoBuild = false;
+	private int scanParallelism = Runtime.getRuntime().availableProcessors();
+	private ScanPruningRules scanPruningRules = new ScanPruningRules();
+	private final ImportMetrics importMetrics = new ImportMetrics();
 
 	/**
 	 * Import the test projects along with the regular projects as well.
@@ -42,20 +87,304 @@ public class CSSImportPresenter {
 		this.importTestProjects = importTestProjects;
 	}
 
+	/**
+	 * Check if the dependencies provided by the target platform are left out of the import.
+	 * @return True if the target platform bundles are not imported as dependencies.
+	 */
+	public boolean isSkipTargetPlatformBundles() {
+		return skipTargetPlatformBundles;
+	}
+
+	/**
+	 * Set if the dependencies provided by the active PDE target platform are left out of the import.
+	 * The selected projects are imported even if the target platform provides them.
+	 * Nothing is left out if PDE is not installed.
+	 * @param skipTargetPlatformBundles True to leave out the target platform bundles.
+	 */
+	public void setSkipTargetPlatformBundles(boolean skipTargetPlatformBundles) {
+		this.skipTargetPlatformBundles = skipTargetPlatformBundles;
+	}
+
+	/**
+	 * Return how the optional dependencies are imported.
+	 * @return Optional dependency mode.
+	 */
+	public OptionalDependencyMode getOptionalDependencyMode() {
+		return optionalDependencyMode;
+	}
+
+	/**
+	 * Set how the optional dependencies are imported.
+	 * @param optionalDependencyMode Optional dependency mode.
+	 */
+	public void setOptionalDependencyMode(OptionalDependencyMode optionalDependencyMode) {
+		this.optionalDependencyMode = optionalDependencyMode;
+	}
+
+	/**
+	 * Read the bundles of the active PDE target platform, once. Resolving a large target platform takes a while,
+	 * so call it from a background job.
+	 */
+	public synchronized void readTargetPlatformBundles() {
+		if(!targetPlatformRead){
+			targetPlatformBundles = TargetPlatformBundles.fromActiveTarget();
+			targetPlatformRead = true;
+		}
+	}
+
+	/**
+	 * Check if the bundles of the target platform were read.
+	 * @return True if {@link #readTargetPlatformBundles()} is done.
+	 */
+	public boolean isTargetPlatformRead() {
+		return targetPlatformRead;
+	}
+
+	/**
+	 * Return the bundles of the active PDE target platform read by {@link #readTargetPlatformBundles()}.
+	 * @return Target platform bundles, or null if PDE is not installed or the bundles were not read yet.
+	 */
+	public TargetPlatformBundles getTargetPlatformBundles() {
+		return targetPlatformBundles;
+	}
+
+	/**
+	 * Check if the projects are imported in a single workspace operation.
+	 * @return True if the import is batched.
+	 */
+	public boolean isBatchImport() {
+		return batchImport;
+	}
+
+	/**
+	 * Set if the projects are imported in a single workspace operation.
+	 * @param batchImport True to batch the import.
+	 */
+	public void setBatchImport(boolean batchImport) {
+		this.batchImport = batchImport;
+	}
+
+	/**
+	 * Check if the autobuild is suspended during the import.
+	 * @return True if the imported projects are built once after the import.
+	 */
+	public boolean isSuspendAutoBuild() {
+		return suspendAutoBuild;
+	}
+
+	/**
+	 * Set if the autobuild is suspended during the import and the imported projects are built once afterwards.
+	 * @param suspendAutoBuild True to suspend the autobuild.
+	 */
+	public void setSuspendAutoBuild(boolean suspendAutoBuild) {
+		this.suspendAutoBuild = suspendAutoBuild;
+	}
+
+	/**
+	 * Maximum number of jobs opening the imported projects in parallel.
+	 * @return Parallelism level of the import.
+	 */
+	public int getImportParallelism() {
+		return importParallelism;
+	}
+
+	/**
+	 * Set the maximum number of jobs opening the imported projects in parallel.
+	 * @param importParallelism Parallelism level of the import. 1 or less imports sequentially.
+	 */
+	public void setImportParallelism(int importParallelism) {
+		this.importParallelism = importParallelism;
+	}
+
+	/**
+	 * Number of threads used to scan the projects path.
+	 * @return Parallelism level of the scan.
+	 */
+	public int getScanParallelism() {
+		return scanParallelism;
+	}
+
+	/**
+	 * Set the number of threads used to scan the projects path.
+	 * @param scanParallelism Parallelism level of the scan. 1 or less scans sequentially.
+	 */
+	public void setScanParallelism(int scanParallelism) {
+		this.scanParallelism = scanParallelism;
+	}
+
+	/**
+	 * Return the rules for the directories the scan does not descend into.
+	 * @return Pruning rules of the scan.
+	 */
+	public ScanPruningRules getScanPruningRules() {
+		return scanPruningRules;
+	}
+
+	/**
+	 * Set the rules for the directories the scan does not descend into.
+	 * @param scanPruningRules Pruning rules of the scan. Null to scan the whole tree.
+	 */
+	public void setScanPruningRules(ScanPruningRules scanPruningRules) {
+		this.scanPruningRules = scanPruningRules;
+	}
+
+	/**
+	 * Return the number of directories skipped by the last scan.
+	 * @return Number of directories the last scan did not descend into.
+	 */
+	public int getSkippedDirectoryCount() {
+		return loadedProjects.skippedDirectoryCount;
+	}
+
+	/**
+	 * Return the timings and counters of the last scan and the imports since. They are logged when an import is done.
+	 * @return Metrics of the last scan and import.
+	 */
+	public ImportMetrics getImportMetrics() {
+		return importMetrics;
+	}
+
 	/**
 	 * Returns the currently user selected projects.
-	 * @return List of ProjectDefinitions the user has selected.
+	 * @return Unmodifiable set of ProjectDefinitions the user has selected.
+	 */
+	public Set<ProjectDefinition> getSelectedProjects() {
+		return Collections.unmodifiableSet(selectedProjects);
+	}
+
+	/**
+	 * Check if the user selected the project.
+	 * @param projectDefinition Loaded project.
+	 * @return True if the project is selected.
+	 */
+	public boolean isSelected(ProjectDefinition projectDefinition) {
+		return selectedProjects.contains(projectDefinition);
+	}
+
+	/**
+	 * Select or deselect a project. Selecting a project adds one reference to every node of its memoized closure,
+	 * deselecting removes them, so only the contribution of the project is updated and the closures of the other
+	 * selected projects are kept.
+	 * @param projectDefinition Loaded project.
+	 * @param selected True to select the project.
+	 */
+	public void setSelected(ProjectDefinition projectDefinition, boolean selected) {
+		boolean changed = selected ? selectedProjects.add(projectDefinition) : selectedProjects.remove(projectDefinition);
+		if(changed && selectionClosureEngine == getClosureEngine()){
+			addSelectionReferences(projectDefinition, selected ? 1 : -1);
+		}
+	}
+
+	/**
+	 * Add or remove the references of a selected project to the nodes of its closure and update the closure size.
+	 * @param projectDefinition Selected project. Projects that are not in the graph are ignored.
+	 * @param delta 1 to add the references, -1 to remove them.
+	 */
+	private void addSelectionReferences(ProjectDefinition projectDefinition, int delta) {
+		int node = selectionClosureEngine.getDependencyGraph().getNode(projectDefinition.getProjectId());
+		if(node < 0){
+			return;
+		}
+		BitSet closure = selectionClosureEngine.getClosure(node);
+		for(int i=closure.nextSetBit(0);i >= 0;i=closure.nextSetBit(i + 1)){
+			int count = selectionReferenceCounts[i] += delta;
+			if(delta > 0 && count == 1){
+				selectionClosureSize++;
+			}else if(delta < 0 && count == 0){
+				selectionClosureSize--;
+			}
+		}
+	}
+
+	/**
+	 * Deselect all the projects.
+	 */
+	public void clearSelection() {
+		selectedProjects.clear();
+		Arrays.fill(selectionReferenceCounts, 0);
+		selectionClosureSize = 0;
+	}
+
+	/**
+	 * Rebuild the selection against the loaded projects, when a scan that streamed its projects is done.
+	 * A selected project is replaced by the loaded project with the same id and path. The others are deselected,
+	 * e.g. a project whose id is loaded from another path, as the import would take that project instead.
+	 * @return Number of deselected projects.
+	 */
+	public int retainLoadedSelection() {
+		List<ProjectDefinition> selected = new ArrayList<ProjectDefinition>(selectedProjects);
+		selectedProjects.clear();
+		Map<String, ProjectDefinition> projectsMap = loadedProjects.projectsMap;
+		for(ProjectDefinition projectDefinition:selected){
+			ProjectDefinition loadedProject = projectsMap.get(projectDefinition.getProjectId());
+			if(loadedProject != null && loadedProject.getProjectPath().equals(projectDefinition.getProjectPath())){
+				selectedProjects.add(loadedProject);
+			}
+		}
+		selectionClosureEngine = null;
+		return selected.size() - selectedProjects.size();
+	}
+
+	/**
+	 * Return the number of selected projects.
+	 * @return Number of projects the user selected.
 	 */
-	public List<ProjectDefinition> getSelectedProjects() {
-		return selectedProjects;
+	public int getSelectedCount() {
+		return selectedProjects.size();
+	}
+
+	/**
+	 * Return the number of projects the current selection imports. The count is kept up to date as projects are
+	 * selected, the references are only rebuilt when the loaded projects or the import settings changed.
+	 * @return Number of projects the user selected + their dependencies + test projects if so specified.
+	 */
+	public int getTotalProjectsToImport() {
+		ClosureEngine engine = getClosureEngine();
+		if(selectionClosureEngine != engine){
+			selectionClosureEngine = engine;
+			selectionReferenceCounts = new int[engine.getDependencyGraph().size()];
+			selectionClosureSize = 0;
+			for(ProjectDefinition projectDefinition:selectedProjects){
+				addSelectionReferences(projectDefinition, 1);
+			}
+		}
+		return selectionClosureSize;
+	}
+
+	/**
+	 * Return the number of projects a selection imports with other settings than the current ones, e.g. to preview
+	 * every optional dependency mode or how many projects leaving out the target platform bundles saves.
+	 * The closures are memoized in engines of their own, so the previews can be computed in a background job
+	 * while the wizard keeps using the presenter. The previews are computed one at a time.
+	 * @param projects Copy of the selected projects.
+	 * @param includeTestProjects True to count the test projects as well.
+	 * @param skipTargetPlatformBundles True to count without the dependencies the target platform provides.
+	 * @param optionalDependencyMode How the optional dependencies are followed.
+	 * @return Number of the projects + their dependencies + test projects if so specified.
+	 */
+	public int countPreviewProjectsToImport(Collection<ProjectDefinition> projects, boolean includeTestProjects,
+			boolean skipTargetPlatformBundles, OptionalDependencyMode optionalDependencyMode) {
+		synchronized(previewClosureEngines){
+			return getClosureEngine(previewClosureEngines, includeTestProjects, skipTargetPlatformBundles,
+					optionalDependencyMode).computeClosure(projects).cardinality();
+		}
 	}
 
 	/**
 	 * Return the list of all the currently loaded project definitions.
-	 * @return List of all project definitions.
+	 * @return Unmodifiable list of all project definitions.
 	 */
 	public List<ProjectDefinition> getAllProjectsDefinition() {
-		return allProjectsDefinition;
+		return loadedProjects.allProjectsDefinition;
+	}
+
+	/**
+	 * Return the filter index of the currently loaded projects. The index is immutable and can be queried
+	 * from a background job, a new index is created on every load.
+	 * @return Filter index of the loaded projects.
+	 */
+	public ProjectFilter getProjectFilter() {
+		return loadedProjects.projectFilter;
 	}
 
 	/**
@@ -64,15 +393,112 @@ public class CSSImportPresenter {
 	 * @throws IOException When error occurred while reading the files.
 	 */
 	public void loadProjectsFromPath(String path) throws IOException {
-		selectedProjects.clear();
-		allProjectsDefinition.clear();
+		clearSelection();
+		loadProjectsFromPath(path, null);
+	}
 
-		FSProjectDefinitionProvider projectDefinitionReader = new FSProjectDefinitionProvider(path);
-		Map<String, ProjectDefinition> newProjectDefinitions = projectDefinitionReader.getProjectDefinitions();
+	/**
+	 * Load the projects from the specified path, passing them to the sink while they are found.
+	 * The method can run in a background job: the loaded projects, their graph and filter index are
+	 * replaced all at once when the scan is done. The selection is left as it is,
+	 * call {@link #retainLoadedSelection()} to rebuild it against the loaded projects.
+	 * If several projects have the same id, the one with the first path in alphabetical order is loaded.
+	 * @param path Path to load the projects.
+	 * @param sink Receives the found projects and can cancel the scan. Can be null.
+	 * @throws IOException When error occurred while reading the files. No projects are loaded then.
+	 * @throws CancellationException If the sink canceled the scan. No projects are loaded then.
+	 */
+	public void loadProjectsFromPath(String path, IProjectDefinitionSink sink) throws IOException {
+		String rootPath = Paths.get(path).toAbsolutePath().normalize().toString();
+		ScanIndex scanIndex = new ScanIndex(getScanIndexFile(rootPath), rootPath);
+		FSProjectDefinitionProvider projectDefinitionReader = FSProjectDefinitionProvider.createStreamingProvider(path,
+				scanParallelism, scanIndex, scanPruningRules);
+		importMetrics.reset();
+		projectDefinitionReader.setMetricsListener(importMetrics);
+		
+		// The projects are collected straight from the scan, the provider does not keep another copy.
+		ProjectDefinitionCollector collector = new ProjectDefinitionCollector(sink);
+		try {
+			projectDefinitionReader.streamProjectDefinitions(collector);
+		} catch (IOException | CancellationException e) {
+			loadedProjects = new LoadedProjects(Collections.<String, ProjectDefinition>emptyMap(), 0);
+			throw e;
+		}
+		LoadedProjects newLoadedProjects = new LoadedProjects(collector.getProjectDefinitions(),
+				projectDefinitionReader.getSkippedDirectoryCount());
+		for(String warning:projectDefinitionReader.getScanWarnings()){
+			log(IStatus.WARNING, warning, null);
+		}
+
+		try {
+			scanIndex.save();
+		} catch (IOException e) {
+			// The index is only a cache, the next scan parses the projects again.
+			log(IStatus.WARNING, "Scan index of " + rootPath + " could not be saved.", e);
+		}
 
-		for (Map.Entry<String, ProjectDefinition> currentEntry : newProjectDefinitions.entrySet()) {
-			allProjectsDefinition.add(currentEntry.getValue());
+		if(sink != null && sink.isCanceled()){
+			loadedProjects = new LoadedProjects(Collections.<String, ProjectDefinition>emptyMap(), 0);
+			throw new CancellationException("Scan of " + rootPath + " canceled.");
 		}
+		loadedProjects = newLoadedProjects;
+	}
+
+	/**
+	 * Return the location of the scan index of a root path. The index is stored in the plug-in state location.
+	 * @param rootPath Normalized root path of the scan.
+	 * @return Location of the index file.
+	 */
+	private Path getScanIndexFile(String rootPath) {
+		IPath stateLocation = Platform.getStateLocation(FrameworkUtil.getBundle(getClass()));
+		String indexName = UUID.nameUUIDFromBytes(rootPath.getBytes(StandardCharsets.UTF_8)).toString();
+		return Paths.get(stateLocation.toOSString(), "scan-" + indexName + ".index");
+	}
+
+	/**
+	 * Return the closure engine for the loaded projects and the current settings.
+	 * @return Closure engine.
+	 */
+	private ClosureEngine getClosureEngine() {
+		return getClosureEngine(closureEngines, importTestProjects, skipTargetPlatformBundles, optionalDependencyMode);
+	}
+
+	/**
+	 * Return the closure engine for the loaded projects, with or without the test projects and the target platform
+	 * bundles and with an optional dependency mode. The engines are kept while neither the projects nor the test
+	 * projects setting change, so they can reuse the closures computed before.
+	 * @param engines Engines kept for each target platform setting and optional dependency mode.
+	 * @param includeTestProjects True for the engine including the test projects.
+	 * @param skipTargetPlatformBundles True for the engine cutting the target platform bundles. Ignored if PDE is not installed
+	 * or the bundles were not read yet.
+	 * @param optionalDependencyMode How the engine follows the optional dependencies.
+	 * @return Closure engine.
+	 */
+	private ClosureEngine getClosureEngine(ClosureEngine[] engines, boolean includeTestProjects,
+			boolean skipTargetPlatformBundles, OptionalDependencyMode optionalDependencyMode) {
+		DependencyGraph dependencyGraph = loadedProjects.dependencyGraph;
+		TargetPlatformBundles targetBundles = skipTargetPlatformBundles ? getTargetPlatformBundles() : null;
+		int index = optionalDependencyMode.ordinal() * 2 + (targetBundles == null ? 0 : 1);
+		ClosureEngine engine = engines[index];
+		if(engine == null || engine.getDependencyGraph() != dependencyGraph
+				|| engine.isIncludeTestProjects() != includeTestProjects){
+			engine = new ClosureEngine(dependencyGraph, includeTestProjects,
+					targetBundles == null ? null : targetBundles.getProvidedNodes(dependencyGraph), optionalDependencyMode);
+			engines[index] = engine;
+		}
+		return engine;
+	}
+
+	/**
+	 * Create the import plan of the projects.
+	 * @param projectsToImport Project the user selected for import.
+	 * @return Plan with the projects the user selected + their dependencies + test projects if so specified.
+	 */
+	public ImportPlan createImportPlan(Collection<ProjectDefinition> projectsToImport) {
+		long startTime = System.nanoTime();
+		ImportPlan importPlan = getClosureEngine().createImportPlan(projectsToImport);
+		importMetrics.phaseCompleted(Phase.CLOSURE, projectsToImport.size() + " selected projects", System.nanoTime() - startTime);
+		return importPlan;
 	}
 
 	/**
@@ -80,38 +506,82 @@ public class CSSImportPresenter {
 	 * @param projectsToImport Project the user selected for import.
 	 * @return Number of projects the user selected + their dependencies + test projects if so specified.
 	 */
-	public int countTotalProjectsToImport(List<ProjectDefinition> projectsToImport) {
-		Map<String, ProjectDefinition> projectsMap = getProjectsMap();
-
-		ProjectImporter projectImporter = new ProjectImporter(projectsMap);
-		projectImporter.setImportTestProjects(importTestProjects);
-		return projectImporter.getNumberOfProjectsToImport(projectsToImport);
+	public int countTotalProjectsToImport(Collection<ProjectDefinition> projectsToImport) {
+		return getClosureEngine().computeClosure(projectsToImport).cardinality();
 	}
 
 	/**
-	 * Import the projects with their dependencies. It also imports their tests, if specified.
-	 * @param projectsToImport Projects the user specified to import.
+	 * Import the projects of the plan and log the metrics of the scan and the import, and the failures if any, to the error log.
+	 * @param importPlan Plan created by {@link #createImportPlan(Collection)}.
 	 * @param importMonitor Import monitor. To be used for getting info of the import status.
+	 * @param monitor Monitor the import is canceled with. Can be null.
+	 * @return OK status, or a multi status with the projects and operations that failed.
 	 */
-	public void importProjects(List<ProjectDefinition> projectsToImport, IImportMonitor importMonitor) {
-		Map<String, ProjectDefinition> projectsMap = getProjectsMap();
-
-		ProjectImporter projectImporter = new ProjectImporter(projectsMap);
+	public IStatus importProjects(ImportPlan importPlan, IImportMonitor importMonitor, IProgressMonitor monitor) {
+		ProjectImporter projectImporter = new ProjectImporter(importPlan.getDependencyGraph());
 		projectImporter.setProgressMonitor(importMonitor);
-		projectImporter.setImportTestProjects(importTestProjects);
-		projectImporter.importProjectsWithDependencies(projectsToImport);
+		projectImporter.setBatchImport(batchImport);
+		projectImporter.setImportParallelism(importParallelism);
+		projectImporter.setSuspendAutoBuild(suspendAutoBuild);
+		projectImporter.setMetricsListener(importMetrics);
+		IStatus importStatus = projectImporter.importPlan(importPlan, monitor);
+
+		log(IStatus.INFO, "Import of " + importPlan.size() + " projects done.\n" + importMetrics.getSummary(), null);
+		if(!importStatus.isOK()){
+			Platform.getLog(FrameworkUtil.getBundle(getClass())).log(importStatus);
+		}
+		return importStatus;
+	}
+
+	/**
+	 * Write a message to the error log of the plug-in.
+	 * @param severity Severity of the message, one of the {@link IStatus} severities.
+	 * @param message Message to log.
+	 * @param exception Cause of the message. Can be null.
+	 */
+	private void log(int severity, String message, Throwable exception) {
+		Bundle bundle = FrameworkUtil.getBundle(getClass());
+		Platform.getLog(bundle).log(new Status(severity, bundle.getSymbolicName(), message, exception));
+	}
+
+	/**
+	 * Return the dependency graph of the currently loaded project definitions.
+	 * @return Dependency graph, built once per load.
+	 */
+	public DependencyGraph getDependencyGraph() {
+		return loadedProjects.dependencyGraph;
 	}
 
 	/**
 	 * Return the Map of all the currently loaded project definitions.
-	 * @return Map where the key=projectId, value=ProjectDefinition
+	 * @return Unmodifiable map where the key=projectId, value=ProjectDefinition. Built once per load.
 	 */
 	public Map<String, ProjectDefinition> getProjectsMap() {
-		// We are using a HashMap because of its access time complexity.
-		Map<String, ProjectDefinition> projectsMap = new HashMap<String, ProjectDefinition>();
-		for (ProjectDefinition projectDefinition : allProjectsDefinition) {
-			projectsMap.put(projectDefinition.getProjectId(), projectDefinition);
+		return loadedProjects.projectsMap;
+	}
+
+	/**
+	 * <code>LoadedProjects</code>
+	 * holds the result of one load, so a load finishing in a background job replaces it at once.
+	 */
+	private static class LoadedProjects {
+		private final List<ProjectDefinition> allProjectsDefinition;
+		private final Map<String, ProjectDefinition> projectsMap;
+		private final DependencyGraph dependencyGraph;
+		private final ProjectFilter projectFilter;
+		private final int skippedDirectoryCount;
+
+		/**
+		 * Build the graph and the filter index of the loaded projects.
+		 * @param projectDefinitions Loaded projects, key=projectId, value=ProjectDefinition. The map is kept, not copied.
+		 * @param skippedDirectoryCount Number of directories the scan did not descend into.
+		 */
+		LoadedProjects(Map<String, ProjectDefinition> projectDefinitions, int skippedDirectoryCount) {
+			this.allProjectsDefinition = Collections.unmodifiableList(new ArrayList<ProjectDefinition>(projectDefinitions.values()));
+			this.projectsMap = Collections.unmodifiableMap(projectDefinitions);
+			this.dependencyGraph = new DependencyGraph(allProjectsDefinition);
+			this.projectFilter = new ProjectFilter(allProjectsDefinition);
+			this.skippedDirectoryCount = skippedDirectoryCount;
 		}
-		return projectsMap;
 	}
 }
@@ -6,9 +6,12 @@ import java.util.List;
 
 import org.csstudio.util.importwizard.project.ProjectDefinition;
 import org.csstudio.util.importwizard.project.importer.IImportMonitor;
+import org.csstudio.util.importwizard.project.importer.ImportPlan;
 import org.csstudio.util.importwizard.wizard.page.Page1;
 import org.csstudio.util.importwizard.wizard.page.Page2;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.jface.dialogs.ErrorDialog;
 import org.eclipse.jface.dialogs.ProgressMonitorDialog;
 import org.eclipse.jface.operation.IRunnableWithProgress;
 import org.eclipse.jface.viewers.IStructuredSelection;
@@ -50,26 +53,27 @@ public class CSSImportWizard extends Wizard implements IImportWizard {
 
 	@Override
 	public boolean performFinish() {
-
+		final IStatus[] importStatus = new IStatus[1];
 		try {
-			new ProgressMonitorDialog(getShell()).run(true, false, new IRunnableWithProgress() {
+			new ProgressMonitorDialog(getShell()).run(true, true, new IRunnableWithProgress() {
 				
 				@Override
 				public void run(final IProgressMonitor monitor) throws InvocationTargetException,
 						InterruptedException {
 					
 					List<ProjectDefinition> projectsToImport = new ArrayList<ProjectDefinition>(presenter.getSelectedProjects());
+					ImportPlan importPlan = presenter.createImportPlan(projectsToImport);
 
 					// Setup the progress dialog and start the import.
-					monitor.beginTask("Importing selected project into workspace.", presenter.countTotalProjectsToImport(projectsToImport));
+					monitor.beginTask("Importing selected project into workspace.", importPlan.size());
 					
-					presenter.importProjects(projectsToImport,new IImportMonitor() {
+					importStatus[0] = presenter.importProjects(importPlan,new IImportMonitor() {
 						@Override
 						public void notifyImportCompleted(String projectId) {
 							monitor.worked(1);
 							monitor.subTask(projectId);
 						}
-					});
+					}, monitor);
 				}
 			});
 		} catch (InvocationTargetException e) {
@@ -80,6 +84,10 @@ public class CSSImportWizard extends Wizard implements IImportWizard {
 			e.printStackTrace();
 		}
 		
+		// The failed projects are also in the error log.
+		if(importStatus[0] != null && importStatus[0].matches(IStatus.ERROR | IStatus.WARNING)){
+			ErrorDialog.openError(getShell(), WINDOW_TITLE, "The import finished with problems, see the details.", importStatus[0]);
+		}
 		return true;
 	}
 
@@ -0,0 +1,376 @@
+package org.csstudio.util.importwizard.wizard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.csstudio.util.importwizard.project.ProjectDefinition;
+
+
+/**
+ * <code>ProjectFilter</code>
+ * is the index used to filter the loaded projects by their projectId.</br>
+ * The index is built once per load and is immutable, so it can be queried from any thread. A query matches
+ * (case insensitive) the projects whose id contains it, found through a trigram index, followed by the projects
+ * matching it by segments: every part of the query, split at dots and camel case humps, is the prefix of a
+ * following segment of the id. For example <code>o.c.d.ui</code> and <code>cssDisp</code> both match
+ * <code>org.csstudio.display.ui</code>. The segment matches are found through a sorted table of the id segments,
+ * where the segments starting with a query part are a contiguous range.
+ *
+ */
+public class ProjectFilter {
+	private static final int[] NO_POSTINGS = new int[0];
+	private static final int MAX_VERIFIED_CANDIDATES = 64;
+
+	private final List<ProjectDefinition> projects;
+	private final String[] lowerCaseIds;
+	private final String[][] idSegments;
+	private final Map<Long, int[]> trigramPostings;
+	private final String[] segments;
+	private final int[][] segmentPostings;
+	private final int[] segmentPostingOffsets;
+
+	/**
+	 * Build the filter index of the projects.
+	 * @param projects Projects to filter, in the order the results should have.
+	 */
+	public ProjectFilter(List<ProjectDefinition> projects) {
+		this.projects = new ArrayList<ProjectDefinition>(projects);
+		int projectCount = this.projects.size();
+		lowerCaseIds = new String[projectCount];
+		idSegments = new String[projectCount][];
+
+		// Collect the positions of every trigram, each position at most once per trigram.
+		// The first element of a growing posting array holds its size.
+		Map<Long, int[]> postings = new HashMap<Long, int[]>();
+		Map<String, int[]> postingsBySegment = new HashMap<String, int[]>();
+		for(int position=0;position<projectCount;position++){
+			String projectId = this.projects.get(position).getProjectId();
+			lowerCaseIds[position] = projectId.toLowerCase(Locale.ENGLISH);
+			idSegments[position] = splitSegments(projectId);
+			for(String segment:idSegments[position]){
+				int[] segmentPositions = postingsBySegment.get(segment);
+				if(segmentPositions == null){
+					segmentPositions = new int[4];
+					postingsBySegment.put(segment, segmentPositions);
+				}else if(segmentPositions[segmentPositions[0]] == position){
+					continue;
+				}else if(segmentPositions[0] + 1 == segmentPositions.length){
+					segmentPositions = Arrays.copyOf(segmentPositions, segmentPositions.length * 2);
+					postingsBySegment.put(segment, segmentPositions);
+				}
+				segmentPositions[++segmentPositions[0]] = position;
+			}
+
+			String id = lowerCaseIds[position];
+			for(int i=0;i+3<=id.length();i++){
+				Long trigram = trigram(id, i);
+				int[] trigramPositions = postings.get(trigram);
+				if(trigramPositions == null){
+					trigramPositions = new int[4];
+					postings.put(trigram, trigramPositions);
+				}else if(trigramPositions[trigramPositions[0]] == position){
+					continue;
+				}else if(trigramPositions[0] + 1 == trigramPositions.length){
+					trigramPositions = Arrays.copyOf(trigramPositions, trigramPositions.length * 2);
+					postings.put(trigram, trigramPositions);
+				}
+				trigramPositions[++trigramPositions[0]] = position;
+			}
+		}
+		for(Map.Entry<Long, int[]> entry:postings.entrySet()){
+			int[] trigramPositions = entry.getValue();
+			entry.setValue(Arrays.copyOfRange(trigramPositions, 1, trigramPositions[0] + 1));
+		}
+		trigramPostings = postings;
+
+		// Sort the segments, so the segments with a common prefix are next to each other. The offsets hold the
+		// running total of the posting sizes, to estimate the candidates of a prefix without reading its postings.
+		segments = postingsBySegment.keySet().toArray(new String[postingsBySegment.size()]);
+		Arrays.sort(segments);
+		segmentPostings = new int[segments.length][];
+		segmentPostingOffsets = new int[segments.length + 1];
+		for(int i=0;i<segments.length;i++){
+			int[] segmentPositions = postingsBySegment.get(segments[i]);
+			segmentPostings[i] = Arrays.copyOfRange(segmentPositions, 1, segmentPositions[0] + 1);
+			segmentPostingOffsets[i + 1] = segmentPostingOffsets[i] + segmentPostings[i].length;
+		}
+	}
+
+	/**
+	 * Return the projects matching the query.
+	 * @param query Filter text. An empty query matches all the projects.
+	 * @return New list with the substring matches first, then the segment matches.
+	 */
+	public List<ProjectDefinition> filter(String query) {
+		if(query == null || query.isEmpty()){
+			return new ArrayList<ProjectDefinition>(projects);
+		}
+
+		String lowerCaseQuery = query.toLowerCase(Locale.ENGLISH);
+		boolean[] matched = new boolean[projects.size()];
+		List<ProjectDefinition> result = new ArrayList<ProjectDefinition>();
+
+		// Substring matches, the trigrams narrow down the candidates.
+		int[] candidates = getSubstringCandidates(lowerCaseQuery);
+		int candidateCount = candidates == null ? projects.size() : candidates.length;
+		for(int i=0;i<candidateCount;i++){
+			int position = candidates == null ? i : candidates[i];
+			if(lowerCaseIds[position].contains(lowerCaseQuery)){
+				matched[position] = true;
+				result.add(projects.get(position));
+			}
+		}
+
+		// Segment matches.
+		String[] queryParts = splitSegments(query);
+		if(queryParts.length > 1 || query.indexOf('.') >= 0){
+			for(int position:getSegmentCandidates(queryParts)){
+				if(!matched[position] && matchesSegments(idSegments[position], queryParts)){
+					result.add(projects.get(position));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Return the positions of the projects that may contain the query.
+	 * @param lowerCaseQuery Query in lower case.
+	 * @return Sorted candidate positions, or null if the query is too short to use the index.
+	 */
+	private int[] getSubstringCandidates(String lowerCaseQuery) {
+		if(lowerCaseQuery.length() < 3){
+			return null;
+		}
+
+		int[][] queryPostings = new int[lowerCaseQuery.length() - 2][];
+		for(int i=0;i<queryPostings.length;i++){
+			queryPostings[i] = trigramPostings.get(trigram(lowerCaseQuery, i));
+		}
+		return intersectPostings(queryPostings, queryPostings.length);
+	}
+
+	/**
+	 * Return the positions of the projects that may match the query parts by segments. Such a project has a segment
+	 * starting with every query part. The candidates of the query parts are intersected, fewest candidates first,
+	 * the same way as the trigram postings.
+	 * @param queryParts Segments of the query.
+	 * @return Sorted candidate positions.
+	 */
+	private int[] getSegmentCandidates(String[] queryParts) {
+		if(queryParts.length == 0){
+			return NO_POSTINGS;
+		}
+		// Range of the segments starting with each query part, as {first, end}.
+		int[][] ranges = new int[queryParts.length][];
+		for(int i=0;i<queryParts.length;i++){
+			int first = lowerBound(queryParts[i]);
+			int end = lowerBound(queryParts[i] + Character.MAX_VALUE);
+			if(first == end){
+				return NO_POSTINGS;
+			}
+			ranges[i] = new int[] {first, end};
+		}
+		Arrays.sort(ranges, new Comparator<int[]>() {
+			@Override
+			public int compare(int[] first, int[] second) {
+				return Integer.compare(getPostingCount(first), getPostingCount(second));
+			}
+		});
+
+		int[] candidates = toPositions(getPrefixPositions(ranges[0]));
+		for(int i=1;i<ranges.length && candidates.length > MAX_VERIFIED_CANDIDATES;i++){
+			if(getPostingCount(ranges[i]) > candidates.length * 8){
+				break;
+			}
+			BitSet prefixPositions = getPrefixPositions(ranges[i]);
+			int size = 0;
+			for(int position:candidates){
+				if(prefixPositions.get(position)){
+					candidates[size++] = position;
+				}
+			}
+			candidates = Arrays.copyOf(candidates, size);
+		}
+		return candidates;
+	}
+
+	/**
+	 * Return the index of the first segment that is not smaller than the key.
+	 * @param key Lower case key.
+	 * @return Index in the sorted segments.
+	 */
+	private int lowerBound(String key) {
+		int index = Arrays.binarySearch(segments, key);
+		return index < 0 ? -index - 1 : index;
+	}
+
+	/**
+	 * Return the total size of the postings in the range of segments. A project with several segments in the range
+	 * is counted once per segment.
+	 * @param range Segment range as {first, end}.
+	 * @return Upper bound of the number of projects.
+	 */
+	private int getPostingCount(int[] range) {
+		return segmentPostingOffsets[range[1]] - segmentPostingOffsets[range[0]];
+	}
+
+	/**
+	 * Return the positions of the projects having a segment in the range.
+	 * @param range Segment range as {first, end}.
+	 * @return Set of the positions.
+	 */
+	private BitSet getPrefixPositions(int[] range) {
+		BitSet positions = new BitSet(projects.size());
+		for(int i=range[0];i<range[1];i++){
+			for(int position:segmentPostings[i]){
+				positions.set(position);
+			}
+		}
+		return positions;
+	}
+
+	/**
+	 * Convert a set of positions to a sorted array.
+	 * @param positions Set of the positions.
+	 * @return Sorted positions.
+	 */
+	private static int[] toPositions(BitSet positions) {
+		int[] result = new int[positions.cardinality()];
+		int size = 0;
+		for(int position=positions.nextSetBit(0);position>=0;position=positions.nextSetBit(position + 1)){
+			result[size++] = position;
+		}
+		return result;
+	}
+
+	/**
+	 * Intersect the posting lists, shortest first. The intersection stops early when the next list is much longer
+	 * than the candidates left, as verifying the candidates directly is then cheaper.
+	 * @param queryPostings Posting lists, null for a trigram that is not in the index.
+	 * @param postingCount Number of posting lists in the array.
+	 * @return Sorted candidate positions.
+	 */
+	private static int[] intersectPostings(int[][] queryPostings, int postingCount) {
+		for(int i=0;i<postingCount;i++){
+			if(queryPostings[i] == null){
+				return NO_POSTINGS;
+			}
+		}
+		Arrays.sort(queryPostings, 0, postingCount, new Comparator<int[]>() {
+			@Override
+			public int compare(int[] first, int[] second) {
+				return Integer.compare(first.length, second.length);
+			}
+		});
+
+		int[] candidates = queryPostings[0];
+		for(int i=1;i<postingCount && candidates.length > MAX_VERIFIED_CANDIDATES;i++){
+			if(queryPostings[i].length > candidates.length * 8){
+				break;
+			}
+			candidates = intersect(candidates, queryPostings[i]);
+		}
+		return candidates;
+	}
+
+	/**
+	 * Intersect two sorted position arrays.
+	 * @param first Sorted positions.
+	 * @param second Sorted positions.
+	 * @return Sorted positions present in both arrays.
+	 */
+	private static int[] intersect(int[] first, int[] second) {
+		int[] result = new int[Math.min(first.length, second.length)];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while(i < first.length && j < second.length){
+			if(first[i] < second[j]){
+				i++;
+			}else if(first[i] > second[j]){
+				j++;
+			}else{
+				result[size++] = first[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * Pack the three characters at the position into a key.
+	 * @param text Text to take the trigram from.
+	 * @param position Position of the first character.
+	 * @return Trigram key.
+	 */
+	private static Long trigram(String text, int position) {
+		return ((long) text.charAt(position) << 32) | ((long) text.charAt(position + 1) << 16) | text.charAt(position + 2);
+	}
+
+	/**
+	 * Split a text into lower case segments at dots, dashes, underscores and camel case humps.
+	 * @param text Project id or query.
+	 * @return Non-empty lower case segments.
+	 */
+	static String[] splitSegments(String text) {
+		List<String> segments = new ArrayList<String>();
+		int start = 0;
+		for(int i=0;i<=text.length();i++){
+			boolean end = i == text.length();
+			char c = end ? 0 : text.charAt(i);
+			boolean separator = c == '.' || c == '-' || c == '_' || c == ' ';
+			boolean hump = !end && i > start && Character.isUpperCase(c) && !Character.isUpperCase(text.charAt(i - 1));
+			if(end || separator || hump){
+				if(i > start){
+					segments.add(text.substring(start, i).toLowerCase(Locale.ENGLISH));
+				}
+				start = separator ? i + 1 : i;
+			}
+		}
+		return segments.isEmpty() ? new String[0] : segments.toArray(new String[segments.size()]);
+	}
+
+	/**
+	 * Check if every query part is the prefix of a following id segment.
+	 * @param segments Segments of the project id.
+	 * @param queryParts Segments of the query.
+	 * @return True if the query parts match the segments in order.
+	 */
+	private static boolean matchesSegments(String[] segments, String[] queryParts) {
+		if(queryParts.length == 0){
+			return false;
+		}
+		int part = 0;
+		for(int segment=0;segment<segments.length && part<queryParts.length;segment++){
+			if(segments[segment].startsWith(queryParts[part])){
+				part++;
+			}
+		}
+		return part == queryParts.length;
+	}
+
+	/**
+	 * Return the number of indexed projects.
+	 * @return Number of projects.
+	 */
+	public int size() {
+		return projects.size();
+	}
+
+	/**
+	 * Return the indexed projects.
+	 * @return Unmodifiable list of the projects.
+	 */
+	public List<ProjectDefinition> getProjects() {
+		return Collections.unmodifiableList(projects);
+	}
+}
@@ -16,6 +16,7 @@ import org.eclipse.swt.widgets.Composite;
 public class Page1 extends WizardPage{
 	private final static String PAGE_TITLE = "Select the projects you want to import.";
 	private final CSSImportPresenter presenter;
+	private Page1Layout pageLayout;
 
 	/**
 	 * Constructor
@@ -28,9 +29,18 @@ public class Page1 extends WizardPage{
 
 	@Override
 	public void createControl(Composite parent) {
-		Page1Layout pageLayout = new Page1Layout(parent, this, presenter);
+		pageLayout = new Page1Layout(parent, this, presenter);
 		
 		setControl(pageLayout);
 	    setPageComplete(false);
 	}
+
+	@Override
+	public void setVisible(boolean visible) {
+		// The import settings may have changed on the second page.
+		if(visible && pageLayout != null){
+			pageLayout.updateSelectionCounts();
+		}
+		super.setVisible(visible);
+	}
 }
@@ -16,6 +16,7 @@ import org.eclipse.swt.widgets.Composite;
 public class Page2 extends WizardPage {
 	private final static String PAGE_TITLE = "Select the additional options.";
 	private final CSSImportPresenter presenter;
+	private Page2Layout pageLayout;
 
 	/**
 	 * Constructor
@@ -28,8 +29,18 @@ public class Page2 extends WizardPage {
 
 	@Override
 	public void createControl(Composite parent) {
-		Page2Layout pageLayout = new Page2Layout(parent, presenter);
+		pageLayout = new Page2Layout(parent, presenter);
 		setControl(pageLayout);
 	    
 	}
+
+	@Override
+	public void setVisible(boolean visible) {
+		// The selection may have changed on the first page.
+		if(visible && pageLayout != null){
+			pageLayout.updateProjectCounts();
+			pageLayout.readTargetPlatform();
+		}
+		super.setVisible(visible);
+	}
 }
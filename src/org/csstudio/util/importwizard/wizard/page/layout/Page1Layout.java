@@ -3,20 +3,36 @@ package org.csstudio.util.importwizard.wizard.page.layout;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CancellationException;
 
 import org.csstudio.util.importwizard.project.ProjectDefinition;
+import org.csstudio.util.importwizard.project.provider.IProjectDefinitionSink;
+import org.csstudio.util.importwizard.project.provider.ScanPruningRules;
 import org.csstudio.util.importwizard.wizard.CSSImportPresenter;
+import org.csstudio.util.importwizard.wizard.ProjectFilter;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.runtime.preferences.InstanceScope;
-import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.CheckStateChangedEvent;
+import org.eclipse.jface.viewers.CheckboxTableViewer;
 import org.eclipse.jface.viewers.ColumnLabelProvider;
-import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.ICheckStateListener;
+import org.eclipse.jface.viewers.ICheckStateProvider;
+import org.eclipse.jface.viewers.ILazyContentProvider;
 import org.eclipse.jface.viewers.TableViewerColumn;
+import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jface.wizard.WizardPage;
 import org.eclipse.swt.SWT;
-import org.eclipse.swt.custom.BusyIndicator;
 import org.eclipse.swt.custom.CLabel;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
+import org.eclipse.swt.events.FocusEvent;
+import org.eclipse.swt.events.FocusListener;
 import org.eclipse.swt.events.KeyEvent;
 import org.eclipse.swt.events.KeyListener;
 import org.eclipse.swt.events.ModifyEvent;
@@ -28,13 +44,12 @@ import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.DirectoryDialog;
-import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Label;
-import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableColumn;
-import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.Text;
+import org.osgi.framework.FrameworkUtil;
 import org.osgi.service.prefs.Preferences;
 
 
@@ -48,12 +63,44 @@ import org.osgi.service.prefs.Preferences;
 public class Page1Layout extends Composite {
 	private final String preferencesNode = this.getClass().getCanonicalName();
 	private static final String node_lastPath = "lastUsedPath";
+	private static final String node_scanParallelism = "scanParallelism";
+	private static final String node_scanIgnoreRules = "scanIgnoreRules";
+	private static final String node_scanStopAtProjects = "scanStopAtProjects";
+	private static final int FILTER_DELAY = 150;
+	private static final int SCAN_BATCH_DELAY = 100;
+	
+	// Scans run one after another, a canceled scan finishes before the next one starts.
+	private static final ISchedulingRule SCAN_RULE = new ISchedulingRule() {
+		
+		@Override
+		public boolean isConflicting(ISchedulingRule rule) {
+			return rule == this;
+		}
+		
+		@Override
+		public boolean contains(ISchedulingRule rule) {
+			return rule == this;
+		}
+	};
 	
 	private final Text textProjectsRootPath;
-	private Table table;
-	private final TableViewer tableViewer;
+	private final Text textScanIgnoreRules;
+	private final Button buttonStopAtProjects;
+	private final CheckboxTableViewer tableViewer;
 	private final Text textProjectFilter;
+	private final Label labelSelectionCounts;
 	private String currentProjectsPath;
+	private Job filterJob;
+	private int filterGeneration = 0;
+	private List<ProjectDefinition> tableProjects = new ArrayList<ProjectDefinition>();
+	
+	// Scan state. The scanned projects belong to the UI thread, the pending ones are guarded by their own lock.
+	private Job scanJob;
+	private boolean scanning = false;
+	private final List<ProjectDefinition> scannedProjects = new ArrayList<ProjectDefinition>();
+	private final List<ProjectDefinition> pendingProjects = new ArrayList<ProjectDefinition>();
+	private int scanGeneration = 0;
+	private boolean batchScheduled = false;
 
 	private final CSSImportPresenter presenter;
 	private final WizardPage wizardPage;
@@ -135,6 +182,58 @@ public class Page1Layout extends Composite {
 			public void widgetDefaultSelected(SelectionEvent e) {}
 		});
 		
+		// Ignore rules of the scan, added to the default ones.
+		Preferences preferences = InstanceScope.INSTANCE.getNode(preferencesNode);
+		CLabel lblScanIgnoreRules = new CLabel(this, SWT.NONE);
+		lblScanIgnoreRules.setText("Skip directories matching (comma separated globs, e.g. build, applications/*/test):");
+		new Label(this, SWT.NONE);
+		
+		textScanIgnoreRules = new Text(this, SWT.BORDER);
+		textScanIgnoreRules.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 1, 1));
+		textScanIgnoreRules.setText(preferences.get(node_scanIgnoreRules, ""));
+		textScanIgnoreRules.setMessage("Always skipped: " + joinRules(ScanPruningRules.DEFAULT_IGNORE_RULES));
+		
+		// The rules are applied when enter is pressed or the focus is lost.
+		textScanIgnoreRules.addKeyListener(new KeyListener() {
+			
+			@Override
+			public void keyReleased(KeyEvent e) {
+				if(e.keyCode ==SWT.CR || e.keyCode == 16777296){
+					textProjectFilter.setFocus();
+				}
+			}
+			
+			@Override
+			public void keyPressed(KeyEvent e) {}
+		});
+		textScanIgnoreRules.addFocusListener(new FocusListener() {
+			
+			@Override
+			public void focusLost(FocusEvent e) {
+				applyScanSettings();
+			}
+			
+			@Override
+			public void focusGained(FocusEvent e) {}
+		});
+		new Label(this, SWT.NONE);
+		
+		// Stop at projects check box.
+		buttonStopAtProjects = new Button(this, SWT.CHECK);
+		buttonStopAtProjects.setText("Stop at projects, do not look for projects nested in other projects");
+		buttonStopAtProjects.setSelection(preferences.getBoolean(node_scanStopAtProjects, false));
+		buttonStopAtProjects.addSelectionListener(new SelectionListener() {
+			
+			@Override
+			public void widgetSelected(SelectionEvent e) {
+				applyScanSettings();
+			}
+			
+			@Override
+			public void widgetDefaultSelected(SelectionEvent e) {}
+		});
+		new Label(this, SWT.NONE);
+		
 		// Projects table label.
 		CLabel lblSelectTheProjects = new CLabel(this, SWT.NONE);
 		lblSelectTheProjects.setText("Select the projects you want to import:");
@@ -148,24 +247,14 @@ public class Page1Layout extends Composite {
 			
 			@Override
 			public void modifyText(ModifyEvent e) {
-				String filterText = textProjectFilter.getText();
-				if(filterText.length()>0){
-					List<ProjectDefinition> filteredList = new ArrayList<ProjectDefinition>(presenter.getAllProjectsDefinition().size());
-					for (ProjectDefinition projectDefinition:presenter.getAllProjectsDefinition()){
-						if(projectDefinition.getProjectId().contains(filterText)){
-							filteredList.add(projectDefinition);
-						}
-					}
-					fillTableWithData(filteredList);
-				}else{
-					fillTableWithData(presenter.getAllProjectsDefinition());
-				}
+				// Filter once the user stops typing, the timer is restarted on every key.
+				getDisplay().timerExec(FILTER_DELAY, filterRunnable);
 			}
 		});
 		new Label(this, SWT.NONE);
 		
-		// Projects table.
-		tableViewer = new TableViewer(this, SWT.BORDER | SWT.CHECK | SWT.FULL_SELECTION);
+		// Projects table. Only the visible rows are realized.
+		tableViewer = CheckboxTableViewer.newCheckList(this, SWT.BORDER | SWT.FULL_SELECTION | SWT.VIRTUAL);
 		TableViewerColumn nameColumnViewer = new TableViewerColumn(tableViewer, parent.getStyle());
 		TableColumn nameColumn = nameColumnViewer.getColumn();
 		nameColumn.setWidth(410);
@@ -178,41 +267,189 @@ public class Page1Layout extends Composite {
 		      }
 		});
 		
-		table = tableViewer.getTable();
+		Table table = tableViewer.getTable();
 		table.setLinesVisible(true);
 		table.setHeaderVisible(true);
 		table.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true, 1, 1));
-		tableViewer.setContentProvider(ArrayContentProvider.getInstance());
+		tableViewer.setUseHashlookup(true);
+		tableViewer.setContentProvider(new LazyProjectsContentProvider());
+		
+		// The check state comes from the selection in the presenter.
+		tableViewer.setCheckStateProvider(new ICheckStateProvider() {
+			
+			@Override
+			public boolean isChecked(Object element) {
+				return presenter.isSelected((ProjectDefinition) element);
+			}
+			
+			@Override
+			public boolean isGrayed(Object element) {
+				return false;
+			}
+		});
 		fillTableWithData(presenter.getAllProjectsDefinition());
-		table.addListener(SWT.Selection, new Listener() {
+		tableViewer.addCheckStateListener(new ICheckStateListener() {
 			
 			@Override
-			public void handleEvent(Event event) {
-				if(event.detail == SWT.CHECK){
-					TableItem currentItem = (TableItem) event.item;
-					
-					if(currentItem.getChecked()){
-						presenter.getSelectedProjects().add((ProjectDefinition)currentItem.getData());
-					}else{
-						presenter.getSelectedProjects().remove(currentItem.getData());
-					}
-					
-					// At least one project needs to be selected.
-					for(TableItem item :table.getItems()){
-						if(item.getChecked()){
-							wizardPage.setPageComplete(true);
-							return;
-						}
-					}
-					
-					wizardPage.setPageComplete(false);
+			public void checkStateChanged(CheckStateChangedEvent event) {
+				presenter.setSelected((ProjectDefinition) event.getElement(), event.getChecked());
+				updateSelectionCounts();
+				
+				// At least one project needs to be selected and the scan has to be done.
+				wizardPage.setPageComplete(!scanning && presenter.getSelectedCount() > 0);
+			}
+		});
+		
+		addDisposeListener(new DisposeListener() {
+			
+			@Override
+			public void widgetDisposed(DisposeEvent e) {
+				if(scanJob != null){
+					scanJob.cancel();
 				}
 			}
 		});
 
 		new Label(this, SWT.NONE);
+		
+		// Selection counts, updated as the projects are checked.
+		labelSelectionCounts = new Label(this, SWT.NONE);
+		labelSelectionCounts.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 1, 1));
 		new Label(this, SWT.NONE);
-		new Label(this, SWT.NONE);
+		updateSelectionCounts();
+	}
+	
+	/**
+	 * Show the number of selected projects and the number of projects they import with their dependencies.
+	 * The total is only known once the scan is done and the dependency graph is built.
+	 * Call it when the selection or the import settings change.
+	 */
+	public void updateSelectionCounts() {
+		if(scanning){
+			labelSelectionCounts.setText("selected: " + presenter.getSelectedCount());
+		}else{
+			labelSelectionCounts.setText("selected: " + presenter.getSelectedCount()
+					+ ", total with dependencies: " + presenter.getTotalProjectsToImport());
+		}
+	}
+
+	/**
+	 * Store the scan settings in the preferences and scan the loaded path again if they changed.
+	 * Invalid ignore rules are reported on the page and not stored.
+	 */
+	private void applyScanSettings() {
+		String ignoreRules = textScanIgnoreRules.getText().trim();
+		boolean stopAtProjects = buttonStopAtProjects.getSelection();
+		try {
+			createPruningRules(ignoreRules, stopAtProjects);
+		} catch (IllegalArgumentException e) {
+			wizardPage.setErrorMessage("Invalid ignore rule: " + e.getMessage());
+			return;
+		}
+		wizardPage.setErrorMessage(null);
+		
+		Preferences preferences = InstanceScope.INSTANCE.getNode(preferencesNode);
+		if(ignoreRules.equals(preferences.get(node_scanIgnoreRules, ""))
+				&& stopAtProjects == preferences.getBoolean(node_scanStopAtProjects, false)){
+			return;
+		}
+		preferences.put(node_scanIgnoreRules, ignoreRules);
+		preferences.putBoolean(node_scanStopAtProjects, stopAtProjects);
+		if(currentProjectsPath != null){
+			loadTableData(currentProjectsPath);
+		}
+	}
+	
+	/**
+	 * Create the pruning rules of the scan: the default ignore rules, the user rules and the stop at projects mode.
+	 * @param ignoreRules Comma separated user rules.
+	 * @param stopAtProjects True to stop descending at the first project on every path.
+	 * @return Pruning rules.
+	 * @throws IllegalArgumentException If one of the rules is not a valid glob.
+	 */
+	private static ScanPruningRules createPruningRules(String ignoreRules, boolean stopAtProjects) {
+		ScanPruningRules pruningRules = new ScanPruningRules();
+		for(String rule:ignoreRules.split(",")){
+			if(!rule.trim().isEmpty()){
+				pruningRules.addIgnoreRule(rule);
+			}
+		}
+		pruningRules.setStopAtProjects(stopAtProjects);
+		return pruningRules;
+	}
+	
+	/**
+	 * Join ignore rules to show them to the user.
+	 * @param rules Rules to join.
+	 * @return Comma separated rules.
+	 */
+	private static String joinRules(List<String> rules) {
+		StringBuilder joined = new StringBuilder();
+		for(String rule:rules){
+			if(joined.length() > 0){
+				joined.append(", ");
+			}
+			joined.append(rule);
+		}
+		return joined.toString();
+	}
+
+	/**
+	 * Runnable started when the filter text did not change for {@link #FILTER_DELAY} milliseconds.
+	 */
+	private final Runnable filterRunnable = new Runnable() {
+		
+		@Override
+		public void run() {
+			if(!isDisposed()){
+				filterTableData(textProjectFilter.getText());
+			}
+		}
+	};
+	
+	/**
+	 * Filter the loaded projects in a background job and show the result in the table.
+	 * The result of a query is dropped if another query or load was started meanwhile.
+	 * @param filterText Text to filter the projects with.
+	 */
+	private void filterTableData(final String filterText) {
+		if(filterJob != null){
+			filterJob.cancel();
+		}
+		final int generation = ++filterGeneration;
+		final ProjectFilter loadedFilter = presenter.getProjectFilter();
+		final List<ProjectDefinition> scannedSnapshot = scanning ? new ArrayList<ProjectDefinition>(scannedProjects) : null;
+		final Display display = getDisplay();
+		
+		filterJob = new Job("Filter projects") {
+			
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				// While scanning, filter the projects found so far.
+				ProjectFilter projectFilter = scannedSnapshot == null ? loadedFilter : new ProjectFilter(scannedSnapshot);
+				final List<ProjectDefinition> filteredList = projectFilter.filter(filterText);
+				if(monitor.isCanceled()){
+					return Status.CANCEL_STATUS;
+				}
+				display.asyncExec(new Runnable() {
+					
+					@Override
+					public void run() {
+						if(!isDisposed() && generation == filterGeneration){
+							fillTableWithData(filteredList);
+							
+							// Add the projects found while the query ran.
+							if(scannedSnapshot != null && scannedProjects.size() > scannedSnapshot.size()){
+								appendTableData(filterProjects(scannedProjects.subList(scannedSnapshot.size(), scannedProjects.size()), filterText));
+							}
+						}
+					}
+				});
+				return Status.OK_STATUS;
+			}
+		};
+		filterJob.setSystem(true);
+		filterJob.schedule();
 	}
 
 	/**
@@ -221,20 +458,211 @@ public class Page1Layout extends Composite {
 	 */
 	protected void loadTableData(final String path) {
 		currentProjectsPath = path;
-		BusyIndicator.showWhile(getDisplay(), new Runnable() {
+		Preferences preferences = InstanceScope.INSTANCE.getNode(preferencesNode);
+		presenter.setScanParallelism(preferences.getInt(node_scanParallelism, presenter.getScanParallelism()));
+		
+		// Only valid rules are stored, see applyScanSettings().
+		presenter.setScanPruningRules(createPruningRules(preferences.get(node_scanIgnoreRules, ""),
+				preferences.getBoolean(node_scanStopAtProjects, false)));
+		
+		// Stop the previous scan, its results and pending filter queries belong to the old projects.
+		if(scanJob != null){
+			scanJob.cancel();
+		}
+		filterGeneration++;
+		final int generation;
+		synchronized(pendingProjects){
+			generation = ++scanGeneration;
+			pendingProjects.clear();
+		}
+		scanning = true;
+		scannedProjects.clear();
+		presenter.clearSelection();
+		updateSelectionCounts();
+		fillTableWithData(Collections.<ProjectDefinition>emptyList());
+		wizardPage.setPageComplete(false);
+		wizardPage.setMessage("Scanning " + path + "...");
+		
+		final Display display = getDisplay();
+		scanJob = new Job("Scanning projects in " + path) {
 			
 			@Override
-			public void run() {
+			protected IStatus run(final IProgressMonitor monitor) {
+				monitor.beginTask("Scanning projects in " + path, IProgressMonitor.UNKNOWN);
 				try {
-					presenter.loadProjectsFromPath(path);
-					fillTableWithData(presenter.getAllProjectsDefinition());
+					presenter.loadProjectsFromPath(path, new IProjectDefinitionSink() {
+						
+						@Override
+						public void projectFound(ProjectDefinition projectDefinition) {
+							addScannedProject(display, generation, projectDefinition);
+						}
+						
+						@Override
+						public boolean isCanceled() {
+							return monitor.isCanceled();
+						}
+					});
+				} catch (CancellationException e) {
+					scanStopped(display, generation, "Scan canceled.");
+					return Status.CANCEL_STATUS;
 				} catch (IOException e) {
-					//TODO: Handle error and display it to the user.
+					scanStopped(display, generation, "Error while scanning " + path + ": " + e.getMessage());
+					return new Status(IStatus.ERROR, FrameworkUtil.getBundle(getClass()).getSymbolicName(),
+							"Error while scanning " + path, e);
+				} finally {
+					monitor.done();
+				}
+				
+				display.asyncExec(new Runnable() {
+					
+					@Override
+					public void run() {
+						scanFinished(generation);
+					}
+				});
+				return Status.OK_STATUS;
+			}
+		};
+		scanJob.setRule(SCAN_RULE);
+		scanJob.schedule();
+	}
+	
+	/**
+	 * Queue a project found by the scan. The queued projects are added to the table in batches.
+	 * Called from the scan threads.
+	 * @param display Display of the table.
+	 * @param generation Scan that found the project.
+	 * @param projectDefinition Found project.
+	 */
+	private void addScannedProject(Display display, int generation, ProjectDefinition projectDefinition) {
+		synchronized(pendingProjects){
+			if(generation != scanGeneration){
+				return;
+			}
+			pendingProjects.add(projectDefinition);
+			if(batchScheduled){
+				return;
+			}
+			batchScheduled = true;
+		}
+		
+		display.asyncExec(new Runnable() {
+			
+			@Override
+			public void run() {
+				if(!isDisposed()){
+					getDisplay().timerExec(SCAN_BATCH_DELAY, batchRunnable);
 				}
 			}
 		});
 	}
 	
+	/**
+	 * Runnable adding the queued projects to the table.
+	 */
+	private final Runnable batchRunnable = new Runnable() {
+		
+		@Override
+		public void run() {
+			if(!isDisposed()){
+				addPendingProjects();
+			}
+		}
+	};
+	
+	/**
+	 * Move the queued projects to the table, filtered with the current filter text, and update the counter.
+	 */
+	private void addPendingProjects() {
+		List<ProjectDefinition> batch;
+		synchronized(pendingProjects){
+			batch = new ArrayList<ProjectDefinition>(pendingProjects);
+			pendingProjects.clear();
+			batchScheduled = false;
+		}
+		if(!scanning || batch.isEmpty()){
+			return;
+		}
+		
+		scannedProjects.addAll(batch);
+		appendTableData(filterProjects(batch, textProjectFilter.getText()));
+		wizardPage.setMessage(scannedProjects.size() + " projects found, scanning...");
+	}
+	
+	/**
+	 * Show all the loaded projects when the scan is done.
+	 * @param generation Scan that finished.
+	 */
+	private void scanFinished(int generation) {
+		if(isDisposed() || generation != scanGeneration){
+			return;
+		}
+		synchronized(pendingProjects){
+			pendingProjects.clear();
+			batchScheduled = false;
+		}
+		scanning = false;
+		scannedProjects.clear();
+		
+		// Projects checked during the scan may be duplicates that were not loaded.
+		int deselectedCount = presenter.retainLoadedSelection();
+		
+		// The loaded projects replace the ones added during the scan.
+		String filterText = textProjectFilter.getText();
+		if(filterText.isEmpty()){
+			filterGeneration++;
+			fillTableWithData(presenter.getAllProjectsDefinition());
+		}else{
+			filterTableData(filterText);
+		}
+		updateSelectionCounts();
+		wizardPage.setPageComplete(presenter.getSelectedCount() > 0);
+		wizardPage.setMessage(presenter.getAllProjectsDefinition().size() + " projects found, "
+				+ presenter.getSkippedDirectoryCount() + " directories skipped."
+				+ (deselectedCount > 0 ? " " + deselectedCount + " selected duplicate projects were deselected." : ""));
+	}
+	
+	/**
+	 * Leave the scanning state when the scan was canceled or failed. No projects are loaded then,
+	 * the table is emptied and the path can be loaded again.
+	 * Called from the scan job.
+	 * @param display Display of the table.
+	 * @param generation Scan that stopped.
+	 * @param message Message to show on the page.
+	 */
+	private void scanStopped(Display display, final int generation, final String message) {
+		display.asyncExec(new Runnable() {
+			
+			@Override
+			public void run() {
+				if(isDisposed() || generation != scanGeneration){
+					return;
+				}
+				addPendingProjects();
+				int foundCount = scannedProjects.size();
+				scanning = false;
+				scannedProjects.clear();
+				currentProjectsPath = null;
+				filterGeneration++;
+				presenter.clearSelection();
+				updateSelectionCounts();
+				fillTableWithData(Collections.<ProjectDefinition>emptyList());
+				wizardPage.setPageComplete(false);
+				wizardPage.setMessage(message + " " + foundCount + " projects were found before it stopped.");
+			}
+		});
+	}
+	
+	/**
+	 * Filter a batch of projects on the UI thread. The batches are small, the index is cheap to build.
+	 * @param projectDefinitions Projects to filter.
+	 * @param filterText Text to filter the projects with.
+	 * @return Matching projects.
+	 */
+	private static List<ProjectDefinition> filterProjects(List<ProjectDefinition> projectDefinitions, String filterText) {
+		return filterText.isEmpty() ? projectDefinitions : new ProjectFilter(projectDefinitions).filter(filterText);
+	}
+	
 	/**
 	 * Check if path is valid on disk.
 	 * @param path Path to validate.
@@ -250,19 +678,42 @@ public class Page1Layout extends Composite {
 	 * @param projectDefinitions List of ProjectDefinition-s to display in the table.
 	 */
 	private void fillTableWithData(List<ProjectDefinition> projectDefinitions){
-		// Set the new data.
-		tableViewer.setInput(projectDefinitions);
+		// Set the new data, the rows are realized when they become visible.
+		tableProjects = new ArrayList<ProjectDefinition>(projectDefinitions);
+		tableViewer.setInput(tableProjects);
+		tableViewer.setItemCount(tableProjects.size());
+	}
+	
+	/**
+	 * Add project definitions at the end of the UI table.
+	 * @param projectDefinitions List of ProjectDefinition-s to add.
+	 */
+	private void appendTableData(List<ProjectDefinition> projectDefinitions){
+		if(!projectDefinitions.isEmpty()){
+			tableProjects.addAll(projectDefinitions);
+			tableViewer.setItemCount(tableProjects.size());
+		}
+	}
+	
+	/**
+	 * <code>LazyProjectsContentProvider</code>
+	 * provides the rows of the virtual projects table on demand.
+	 */
+	private class LazyProjectsContentProvider implements ILazyContentProvider {
+		private List<ProjectDefinition> projectDefinitions = Collections.emptyList();
 		
-		// If there are any selected projects.
-		if(!presenter.getSelectedProjects().isEmpty()){
-			Map<String, ProjectDefinition> projectsMap = presenter.getProjectsMap();
-			
-			// Check if the project in the current line is already selected, and check it.
-			for(TableItem item: tableViewer.getTable().getItems()){
-				if(presenter.getSelectedProjects().contains(projectsMap.get(item.getText()))){
-					item.setChecked(true);
-				}
-			}
+		@Override
+		public void updateElement(int index) {
+			tableViewer.replace(projectDefinitions.get(index), index);
 		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
+			projectDefinitions = newInput == null ? Collections.<ProjectDefinition>emptyList() : (List<ProjectDefinition>) newInput;
+		}
+		
+		@Override
+		public void dispose() {}
 	}
 }
@@ -1,12 +1,24 @@
 package org.csstudio.util.importwizard.wizard.page.layout;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.csstudio.util.importwizard.project.ProjectDefinition;
+import org.csstudio.util.importwizard.project.importer.OptionalDependencyMode;
 import org.csstudio.util.importwizard.wizard.CSSImportPresenter;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.SelectionListener;
+import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Label;
 
 
@@ -20,6 +32,12 @@ import org.eclipse.swt.widgets.Label;
 public class Page2Layout extends Composite {
 
 	private final CSSImportPresenter presenter;
+	private final Label labelProjectCounts;
+	private final Button checkSkipTargetBundles;
+	private Job targetPlatformJob;
+	private Job countJob;
+	private int countGeneration = 0;
+	private final Button[] optionalModeButtons = new Button[OptionalDependencyMode.values().length];
 
 	/**
 	 * Constructor
@@ -46,11 +64,236 @@ public class Page2Layout extends Composite {
 			@Override
 			public void widgetSelected(SelectionEvent event) {
 				presenter.setImportTestProjects(((Button) event.widget).getSelection());
+				updateProjectCounts();
+			}
+			
+			@Override
+			public void widgetDefaultSelected(SelectionEvent e) {}
+		});
+	    
+	    // Batch import label.
+	    Label labelBatchImport = new Label(this, SWT.NONE);
+	    labelBatchImport.setText("Import the projects in a single workspace operation");
+	    
+	    // Batch import check box.
+	    Button checkBatchImport = new Button(this, SWT.CHECK);
+	    checkBatchImport.setSelection(presenter.isBatchImport());
+	    checkBatchImport.addSelectionListener(new SelectionListener() {
+			@Override
+			public void widgetSelected(SelectionEvent event) {
+				presenter.setBatchImport(((Button) event.widget).getSelection());
+			}
+			
+			@Override
+			public void widgetDefaultSelected(SelectionEvent e) {}
+		});
+	    
+	    // Parallel import label.
+	    final int processors = Runtime.getRuntime().availableProcessors();
+	    Label labelParallelImport = new Label(this, SWT.NONE);
+	    labelParallelImport.setText("Open the projects with " + processors + " parallel jobs");
+	    
+	    // Parallel import check box.
+	    Button checkParallelImport = new Button(this, SWT.CHECK);
+	    checkParallelImport.setSelection(presenter.getImportParallelism() > 1);
+	    checkParallelImport.addSelectionListener(new SelectionListener() {
+			@Override
+			public void widgetSelected(SelectionEvent event) {
+				presenter.setImportParallelism(((Button) event.widget).getSelection() ? processors : 1);
+			}
+			
+			@Override
+			public void widgetDefaultSelected(SelectionEvent e) {}
+		});
+	    
+	    // Suspend autobuild label.
+	    Label labelSuspendAutoBuild = new Label(this, SWT.NONE);
+	    labelSuspendAutoBuild.setText("Suspend autobuild and build the imported projects once");
+	    
+	    // Suspend autobuild check box.
+	    Button checkSuspendAutoBuild = new Button(this, SWT.CHECK);
+	    checkSuspendAutoBuild.setSelection(presenter.isSuspendAutoBuild());
+	    checkSuspendAutoBuild.addSelectionListener(new SelectionListener() {
+			@Override
+			public void widgetSelected(SelectionEvent event) {
+				presenter.setSuspendAutoBuild(((Button) event.widget).getSelection());
+			}
+			
+			@Override
+			public void widgetDefaultSelected(SelectionEvent e) {}
+		});
+	    
+	    // Skip target platform bundles label.
+	    Label labelSkipTargetBundles = new Label(this, SWT.NONE);
+	    labelSkipTargetBundles.setText("Do not import dependencies provided by the target platform");
+	    
+	    // Skip target platform bundles check box, enabled once the target platform is read and only if PDE is installed.
+	    checkSkipTargetBundles = new Button(this, SWT.CHECK);
+	    checkSkipTargetBundles.setSelection(presenter.isSkipTargetPlatformBundles());
+	    checkSkipTargetBundles.setEnabled(presenter.getTargetPlatformBundles() != null);
+	    checkSkipTargetBundles.addSelectionListener(new SelectionListener() {
+			@Override
+			public void widgetSelected(SelectionEvent event) {
+				presenter.setSkipTargetPlatformBundles(((Button) event.widget).getSelection());
+				updateProjectCounts();
 			}
 			
 			@Override
 			public void widgetDefaultSelected(SelectionEvent e) {}
 		});
+	    
+	    // Optional dependencies label.
+	    Label labelOptionalDependencies = new Label(this, SWT.NONE);
+	    labelOptionalDependencies.setText("Optional dependencies");
+	    
+	    // Optional dependency mode radio buttons, each with the number of projects it imports.
+	    Composite optionalModes = new Composite(this, SWT.NONE);
+	    optionalModes.setLayout(new GridLayout());
+	    for(final OptionalDependencyMode mode:OptionalDependencyMode.values()){
+	    	Button radio = new Button(optionalModes, SWT.RADIO);
+	    	radio.setSelection(presenter.getOptionalDependencyMode() == mode);
+	    	radio.addSelectionListener(new SelectionListener() {
+				@Override
+				public void widgetSelected(SelectionEvent event) {
+					if(((Button) event.widget).getSelection()){
+						presenter.setOptionalDependencyMode(mode);
+						updateProjectCounts();
+					}
+				}
+				
+				@Override
+				public void widgetDefaultSelected(SelectionEvent e) {}
+			});
+	    	optionalModeButtons[mode.ordinal()] = radio;
+	    }
+	    
+	    // Number of projects to import with and without the target platform bundles.
+	    labelProjectCounts = new Label(this, SWT.NONE);
+	    labelProjectCounts.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 2, 1));
+	    updateProjectCounts();
+	}
+
+	/**
+	 * Read the target platform in a background job, the first time the page is shown, and enable the option
+	 * to leave out its bundles when it is read.
+	 */
+	public void readTargetPlatform() {
+		if(presenter.isTargetPlatformRead() || targetPlatformJob != null){
+			return;
+		}
+		final Display display = getDisplay();
+		targetPlatformJob = new Job("Reading the target platform") {
+			
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				presenter.readTargetPlatformBundles();
+				display.asyncExec(new Runnable() {
+					
+					@Override
+					public void run() {
+						if(!isDisposed()){
+							checkSkipTargetBundles.setEnabled(presenter.getTargetPlatformBundles() != null);
+							updateProjectCounts();
+						}
+					}
+				});
+				return Status.OK_STATUS;
+			}
+		};
+		targetPlatformJob.setSystem(true);
+		targetPlatformJob.schedule();
+	}
+
+	/**
+	 * Show the number of projects the selection imports with the current options, and count in a background job
+	 * the number every other optional dependency mode imports and the number with or without the bundles
+	 * the target platform provides. Call it when the selection or the options change.
+	 */
+	public void updateProjectCounts() {
+		if(countJob != null){
+			countJob.cancel();
+		}
+		final int generation = ++countGeneration;
+		final OptionalDependencyMode activeMode = presenter.getOptionalDependencyMode();
+		final boolean targetBundlesAvailable = presenter.getTargetPlatformBundles() != null;
+		final boolean skipTargetBundles = targetBundlesAvailable && presenter.isSkipTargetPlatformBundles();
+		final boolean includeTestProjects = presenter.isImportTestProjects();
+		final List<ProjectDefinition> selectedProjects = new ArrayList<ProjectDefinition>(presenter.getSelectedProjects());
+		final Display display = getDisplay();
+
+		// Only the count of the current options is known right away, the selection keeps it up to date.
+		final int activeCount = presenter.getTotalProjectsToImport();
+		int[] modeCounts = new int[OptionalDependencyMode.values().length];
+		Arrays.fill(modeCounts, -1);
+		modeCounts[activeMode.ordinal()] = activeCount;
+		showProjectCounts(modeCounts, skipTargetBundles ? -1 : activeCount, skipTargetBundles ? activeCount : -1);
+
+		countJob = new Job("Count the projects to import") {
+			
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				final int[] modeCounts = new int[OptionalDependencyMode.values().length];
+				for(OptionalDependencyMode mode:OptionalDependencyMode.values()){
+					if(monitor.isCanceled()){
+						return Status.CANCEL_STATUS;
+					}
+					modeCounts[mode.ordinal()] = mode == activeMode ? activeCount
+							: presenter.countPreviewProjectsToImport(selectedProjects, includeTestProjects, skipTargetBundles, mode);
+				}
+				final int otherTargetCount = targetBundlesAvailable ? presenter.countPreviewProjectsToImport(selectedProjects,
+						includeTestProjects, !skipTargetBundles, activeMode) : -1;
+				if(monitor.isCanceled()){
+					return Status.CANCEL_STATUS;
+				}
+				display.asyncExec(new Runnable() {
+					
+					@Override
+					public void run() {
+						if(!isDisposed() && generation == countGeneration){
+							showProjectCounts(modeCounts, skipTargetBundles ? otherTargetCount : activeCount,
+									skipTargetBundles ? activeCount : otherTargetCount);
+						}
+					}
+				});
+				return Status.OK_STATUS;
+			}
+		};
+		countJob.setSystem(true);
+		countJob.schedule();
+	}
+
+	/**
+	 * Show the project counts. A count of -1 is not known yet and is shown as being counted.
+	 * @param modeCounts Number of projects each optional dependency mode imports.
+	 * @param allProjects Number of projects imported with all the dependencies.
+	 * @param withoutTargetBundles Number of projects imported without the dependencies the target platform provides.
+	 */
+	private void showProjectCounts(int[] modeCounts, int allProjects, int withoutTargetBundles) {
+		for(OptionalDependencyMode mode:OptionalDependencyMode.values()){
+			int count = modeCounts[mode.ordinal()];
+			optionalModeButtons[mode.ordinal()].setText(mode.getLabel() + " (" + (count < 0 ? "counting..." : count + " projects") + ")");
+		}
+
+		if(!presenter.isTargetPlatformRead()){
+			labelProjectCounts.setText("Projects to import: " + allProjects + " (reading the target platform...)");
+		}else if(presenter.getTargetPlatformBundles() == null){
+			labelProjectCounts.setText("Projects to import: " + allProjects + " (no PDE target platform available)");
+		}else{
+			labelProjectCounts.setText("Projects to import: " + formatCount(allProjects) + ", without the target platform bundles: "
+					+ formatCount(withoutTargetBundles) + " (" + presenter.getTargetPlatformBundles().size() + " bundles in the target platform)");
+		}
+
+		// The texts got longer or shorter.
+		layout(true, true);
+	}
+
+	/**
+	 * Format a project count.
+	 * @param count Number of projects, -1 if not known yet.
+	 * @return Text of the count.
+	 */
+	private static String formatCount(int count) {
+		return count < 0 ? "counting..." : String.valueOf(count);
 	}
 
 }